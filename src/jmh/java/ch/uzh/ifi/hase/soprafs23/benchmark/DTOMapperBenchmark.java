@@ -0,0 +1,64 @@
+package ch.uzh.ifi.hase.soprafs23.benchmark;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DTOMapperBenchmark
+ * Conversion of a single user and of a 10k user list, the size of a full GET /users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DTOMapperBenchmark {
+
+    private static final int LIST_SIZE = 10000;
+
+    private User user;
+    private List<User> users;
+
+    @Setup
+    public void setup() {
+        user = newUser(1);
+        users = new ArrayList<>(LIST_SIZE);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            users.add(newUser(i));
+        }
+    }
+
+    @Benchmark
+    public UserGetDTO convertSingleUser() {
+        return DTOMapper.INSTANCE.convertEntityToUserGetDTO(user);
+    }
+
+    @Benchmark
+    public List<UserGetDTO> convertUserList() {
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        for (User u : users) {
+            userGetDTOs.add(DTOMapper.INSTANCE.convertEntityToUserGetDTO(u));
+        }
+        return userGetDTOs;
+    }
+
+    private static User newUser(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername("user" + id);
+        user.setPassword("password");
+        user.setStatus(UserStatus.OFFLINE);
+        user.setCreationDate(new Date());
+        user.setBirthday(new Date());
+        return user;
+    }
+}
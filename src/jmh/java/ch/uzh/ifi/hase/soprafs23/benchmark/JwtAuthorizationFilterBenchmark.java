@@ -0,0 +1,90 @@
+package ch.uzh.ifi.hase.soprafs23.benchmark;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtAuthorizationFilter;
+import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtUtil;
+import ch.uzh.ifi.hase.soprafs23.service.PresenceRegistry;
+import ch.uzh.ifi.hase.soprafs23.service.UserDetailsCache;
+import ch.uzh.ifi.hase.soprafs23.service.UserEventBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtAuthorizationFilterBenchmark
+ * One authenticated request through the JwtAuthorizationFilter, from the Authorization
+ * header to the populated security context, with a FilterChain that does nothing.
+ * The principal is built from the token claims, so no database is involved. The
+ * requests rotate over the tokens of a few users, so the small caches miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthorizationFilterBenchmark {
+
+    private static final int TOKENS = 4;
+
+    @Param({"10000", "1"})
+    private int claimsCacheSize;
+
+    @Param({"30000", "0"})
+    private long userDetailsCacheTtlMs;
+
+    private final FilterChain chain = (request, response) -> { };
+
+    private JwtAuthorizationFilter filter;
+    private UserEventBroadcaster userEventBroadcaster;
+    private MockHttpServletRequest[] requests;
+    private int next;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setup() {
+        JwtUtil jwtUtil = JwtUtilBenchmark.newJwtUtil(claimsCacheSize);
+        userEventBroadcaster = new UserEventBroadcaster(new ObjectMapper(), 1, 1, 1000, 1000, 1);
+        PresenceRegistry presenceRegistry = new PresenceRegistry(null, userEventBroadcaster, 300000);
+
+        filter = new JwtAuthorizationFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsCache", new UserDetailsCache(userDetailsCacheTtlMs, 10000));
+        ReflectionTestUtils.setField(filter, "presenceRegistry", presenceRegistry);
+        ReflectionTestUtils.setField(filter, "principalFromClaims", true);
+
+        // a claims cache of one entry that is read with rotating tokens never hits
+        requests = new MockHttpServletRequest[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            User user = new User();
+            user.setId(i + 1L);
+            user.setUsername("benchmarkUser" + i);
+            presenceRegistry.track(user.getUsername(), UserStatus.ONLINE);
+            requests[i] = new MockHttpServletRequest("GET", "/users/" + user.getId());
+            requests[i].addHeader("Authorization", "Bearer " + jwtUtil.generateToken(user));
+        }
+        response = new MockHttpServletResponse();
+    }
+
+    @TearDown
+    public void tearDown() {
+        userEventBroadcaster.shutdown();
+    }
+
+    @Benchmark
+    public Object authenticate() throws ServletException, IOException {
+        SecurityContextHolder.clearContext();
+        next = (next + 1) % TOKENS;
+        filter.doFilter(requests[next], response, chain);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
@@ -0,0 +1,63 @@
+package ch.uzh.ifi.hase.soprafs23.benchmark;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtUtil;
+import ch.uzh.ifi.hase.soprafs23.security.jtw.TokenRevocationList;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtUtilBenchmark
+ * Signing a new token and reading the username from a token, once served from the
+ * claims cache and once with a full signature check on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilBenchmark {
+
+    static final String SECRET = "2D4A614E645267556B5870327335FFFFF92F423F4428472B4B6250655368566D";
+
+    @Param({"cached", "uncached"})
+    private String claimsCache;
+
+    private JwtUtil jwtUtil;
+    private User user;
+    private String[] tokens;
+    private int next;
+
+    @Setup
+    public void setup() {
+        // a cache of one entry that is read with two alternating tokens never hits
+        jwtUtil = newJwtUtil("cached".equals(claimsCache) ? 10000 : 1);
+        user = new User();
+        user.setId(1L);
+        user.setUsername("benchmarkUser");
+        tokens = new String[] {jwtUtil.generateToken(user), jwtUtil.generateToken(user)};
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        next ^= 1;
+        return jwtUtil.extractUsername(tokens[next]);
+    }
+
+    static JwtUtil newJwtUtil(int claimsCacheSize) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", claimsCacheSize);
+        ReflectionTestUtils.setField(jwtUtil, "tokenRevocationList", new TokenRevocationList());
+        ReflectionTestUtils.invokeMethod(jwtUtil, "initClaimsCache");
+        return jwtUtil;
+    }
+}
@@ -0,0 +1,95 @@
+package ch.uzh.ifi.hase.soprafs23.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LatencyRecorder
+ * Collects the latencies of all requests per endpoint and computes throughput and
+ * percentiles once the run is over. Samples are only kept after the warmup.
+ */
+class LatencyRecorder {
+
+    private final Map<String, Samples> samplesByEndpoint = new ConcurrentHashMap<>();
+    private volatile long measureFromNanos;
+
+    void startMeasuring() {
+        measureFromNanos = System.nanoTime();
+    }
+
+    boolean isMeasuring() {
+        return measureFromNanos != 0;
+    }
+
+    /**
+     * @param intendedStartNanos the time the request should have been sent, so time spent
+     *                           waiting behind a slow request counts as latency as well
+     */
+    void record(String endpoint, long intendedStartNanos, long endNanos, boolean success) {
+        if (measureFromNanos == 0 || intendedStartNanos < measureFromNanos) {
+            return;
+        }
+        samplesByEndpoint.computeIfAbsent(endpoint, e -> new Samples()).add(endNanos - intendedStartNanos, success);
+    }
+
+    Map<String, Result> results(long measuredNanos) {
+        Map<String, Result> results = new TreeMap<>();
+        samplesByEndpoint.forEach((endpoint, samples) -> results.put(endpoint, samples.toResult(measuredNanos)));
+        return results;
+    }
+
+    static final class Result {
+
+        final int count;
+        final int errors;
+        final double throughputPerSecond;
+        final double p50Millis;
+        final double p95Millis;
+        final double p99Millis;
+        final double maxMillis;
+
+        private Result(long[] latencies, int errors, long measuredNanos) {
+            Arrays.sort(latencies);
+            this.count = latencies.length;
+            this.errors = errors;
+            this.throughputPerSecond = count / (measuredNanos / 1e9);
+            this.p50Millis = percentile(latencies, 0.50);
+            this.p95Millis = percentile(latencies, 0.95);
+            this.p99Millis = percentile(latencies, 0.99);
+            this.maxMillis = count == 0 ? 0 : latencies[count - 1] / 1e6;
+        }
+
+        double errorRate() {
+            return count == 0 ? 0 : (double) errors / count;
+        }
+
+        private static double percentile(long[] sortedLatencies, double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+
+    private static final class Samples {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private int errors;
+
+        private synchronized void add(long latencyNanos, boolean success) {
+            latencies.add(latencyNanos);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        private synchronized Result toResult(long measuredNanos) {
+            return new Result(latencies.stream().mapToLong(Long::longValue).toArray(), errors, measuredNanos);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package ch.uzh.ifi.hase.soprafs23.loadtest;
+
+import ch.uzh.ifi.hase.soprafs23.Application;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test of the user API against the real application on a random port with an
+ * in-memory H2 database. Every client signs up once and then loops over a session
+ * of listing, reading and updating users, with a signout and login every few rounds.
+ * The clients are paced to reach the configured total request rate; latencies are
+ * measured from the time a request was due, so a stalled server cannot hide its
+ * backlog. Fails when a percentile or the error rate of an endpoint exceeds the
+ * budget in latency-budget.properties.
+ *
+ * Run with ./gradlew loadTest -Dloadtest.clients=32 -Dloadtest.ratePerSecond=400
+ * With -Dloadtest.reportFile the results are also written to that file as CSV.
+ */
+@SpringBootTest(classes = Application.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.h2.console.enabled=false",
+                // the calibrated work factor is part of what is measured unless overridden
+                "sopra.app.password.hashBudgetMs=${loadtest.hashBudgetMs:250}",
+                "sopra.app.virtualThreads=${loadtest.virtualThreads:false}",
+                // all clients share one IP and keep logging in
+                "sopra.app.rateLimit.enabled=false"})
+public class UserApiLoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+    private static final int REQUESTS_PER_LOGIN = 20;
+
+    private final int clients = Integer.getInteger("loadtest.clients", 16);
+    private final int ratePerSecond = Integer.getInteger("loadtest.ratePerSecond", 200);
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 10);
+    private final int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 30);
+    private final boolean virtualThreads = Boolean.getBoolean("loadtest.virtualThreads");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LatencyRecorder recorder = new LatencyRecorder();
+
+    @LocalServerPort
+    private int port;
+
+    private HttpClient httpClient;
+
+    @Test
+    public void mixedWorkload_withinLatencyBudget() throws Exception {
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) * clients / ratePerSecond;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long deadline = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+        List<Client> clientList = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            // spread the first requests of the clients over one interval
+            Client client = new Client(i, start + intervalNanos * i / clients, intervalNanos, deadline);
+            clientList.add(client);
+            clientPool.execute(client);
+        }
+        LockSupport.parkNanos(measureFrom - System.nanoTime());
+        recorder.startMeasuring();
+        clientPool.shutdown();
+        assertTrue(clientPool.awaitTermination(durationSeconds + 60L, TimeUnit.SECONDS), "Clients did not finish");
+        for (Client client : clientList) {
+            if (client.failure != null) {
+                fail("Client " + client.number + " failed", client.failure);
+            }
+        }
+
+        Map<String, LatencyRecorder.Result> results = recorder.results(deadline - measureFrom);
+        report(results);
+        String reportFile = System.getProperty("loadtest.reportFile");
+        if (reportFile != null) {
+            // written before the budget is checked, a run over budget is still worth comparing
+            writeReport(results, Path.of(reportFile));
+        }
+        assertWithinBudget(results, loadBudget());
+    }
+
+    private void report(Map<String, LatencyRecorder.Result> results) {
+        System.out.printf("%nLoad test: %d clients, %d requests/s target, %ds measured after %ds warmup, %s threads%n",
+                clients, ratePerSecond, durationSeconds, warmupSeconds, virtualThreads ? "virtual" : "platform");
+        System.out.printf("%-12s %8s %7s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        results.forEach((endpoint, result) -> System.out.printf("%-12s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                endpoint, result.count, result.errors, result.throughputPerSecond,
+                result.p50Millis, result.p95Millis, result.p99Millis, result.maxMillis));
+    }
+
+    /**
+     * Writes the results as CSV, one line per endpoint, for loadTestComparison to put
+     * the runs side by side. The settings of the run are written as a comment line.
+     */
+    private void writeReport(Map<String, LatencyRecorder.Result> results, Path reportFile) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("# java=%s threads=%s clients=%d ratePerSecond=%d warmupSeconds=%d durationSeconds=%d",
+                Runtime.version(), virtualThreads ? "virtual" : "platform", clients, ratePerSecond, warmupSeconds, durationSeconds));
+        lines.add("endpoint,requests,errors,throughputPerSecond,p50Millis,p95Millis,p99Millis,maxMillis");
+        results.forEach((endpoint, result) -> lines.add(String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f",
+                endpoint, result.count, result.errors, result.throughputPerSecond,
+                result.p50Millis, result.p95Millis, result.p99Millis, result.maxMillis)));
+        Files.createDirectories(reportFile.toAbsolutePath().getParent());
+        Files.write(reportFile, lines);
+    }
+
+    private static void assertWithinBudget(Map<String, LatencyRecorder.Result> results, Properties budget) {
+        List<String> violations = new ArrayList<>();
+        results.forEach((endpoint, result) -> {
+            check(violations, endpoint, "p95", result.p95Millis, budget);
+            check(violations, endpoint, "p99", result.p99Millis, budget);
+            check(violations, endpoint, "errorRate", result.errorRate(), budget);
+        });
+        assertTrue(violations.isEmpty(), "Latency budget exceeded:\n" + String.join("\n", violations));
+    }
+
+    private static void check(List<String> violations, String endpoint, String metric, double value, Properties budget) {
+        String limit = budget.getProperty(endpoint + "." + metric, budget.getProperty("default." + metric));
+        if (limit != null && value > Double.parseDouble(limit)) {
+            violations.add(String.format("%s %s = %.3f, budget %s", endpoint, metric, value, limit));
+        }
+    }
+
+    private static Properties loadBudget() throws IOException {
+        Properties budget = new Properties();
+        try (InputStream in = UserApiLoadTest.class.getResourceAsStream("/latency-budget.properties")) {
+            assertNotNull(in, "latency-budget.properties is missing");
+            budget.load(in);
+        }
+        return budget;
+    }
+
+    /**
+     * One simulated user, sending a request every interval.
+     */
+    private final class Client implements Runnable {
+
+        private final int number;
+        private final long intervalNanos;
+        private final long deadline;
+        private long nextStart;
+        private Throwable failure;
+
+        private String username;
+        private String token;
+        private long id;
+
+        private Client(int number, long firstStart, long intervalNanos, long deadline) {
+            this.number = number;
+            this.nextStart = firstStart;
+            this.intervalNanos = intervalNanos;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            try {
+                signup();
+                for (int round = 1; nextStart < deadline; round++) {
+                    send("listUsers", get("/users"));
+                    send("getUser", get("/users/" + id));
+                    if (round % 4 == 0) {
+                        updateUser();
+                    }
+                    if (round % REQUESTS_PER_LOGIN == 0) {
+                        send("signout", authorized("/signout").PUT(HttpRequest.BodyPublishers.noBody()));
+                        login();
+                    }
+                }
+            }
+            catch (Exception | AssertionError e) {
+                failure = e;
+            }
+        }
+
+        private void signup() throws Exception {
+            username = "load-" + number + "-" + System.nanoTime();
+            HttpResponse<String> response = send("signup", json("/users", credentials()));
+            assertEquals(201, response.statusCode(), "Signup failed: " + response.body());
+            token = response.headers().firstValue("Access-Token").orElseThrow();
+            id = objectMapper.readTree(response.body()).get("id").asLong();
+        }
+
+        private void login() throws Exception {
+            HttpResponse<String> response = send("login", json("/login", credentials()));
+            if (response.statusCode() == 200) {
+                token = response.headers().firstValue("Access-Token").orElse(token);
+            }
+        }
+
+        private void updateUser() throws Exception {
+            // the username stays the same, a rename would revoke the token
+            String body = "{\"username\":\"" + username + "\",\"birthday\":\"2000-01-0" + (1 + number % 9) + "\"}";
+            HttpResponse<String> response = send("updateUser", authorized("/users/" + id)
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(body)));
+            token = response.headers().firstValue("Access-Token").orElse(token);
+        }
+
+        private String credentials() {
+            return "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\"}";
+        }
+
+        private HttpRequest.Builder get(String path) {
+            return authorized(path).GET();
+        }
+
+        private HttpRequest.Builder authorized(String path) {
+            return request(path).header("Authorization", "Bearer " + token);
+        }
+
+        private HttpRequest.Builder json(String path, String body) {
+            return request(path).header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body));
+        }
+
+        private HttpRequest.Builder request(String path) {
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).timeout(Duration.ofSeconds(30));
+        }
+
+        private HttpResponse<String> send(String endpoint, HttpRequest.Builder request) throws IOException, InterruptedException {
+            long intendedStart = nextStart;
+            LockSupport.parkNanos(intendedStart - System.nanoTime());
+            nextStart += intervalNanos;
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            recorder.record(endpoint, intendedStart, System.nanoTime(), response.statusCode() < 400);
+            return response;
+        }
+    }
+}
@@ -2,9 +2,12 @@ package ch.uzh.ifi.hase.soprafs23;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -14,10 +17,20 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  */
 @RestController
 @SpringBootApplication
+@EnableScheduling
 public class Application {
 
+  // startup steps kept for /actuator/startuptimeline, later steps are not recorded
+  private static final int STARTUP_STEPS = 10000;
+
   public static void main(String[] args) {
-    SpringApplication.run(Application.class, args);
+    SpringApplication application = new SpringApplication(Application.class);
+    application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+    ConfigurableApplicationContext context = application.run(args);
+    // training run for the AppCDS archive (./gradlew cdsArchive): the JVM dumps the loaded classes on exit
+    if (context.getEnvironment().getProperty("sopra.app.cds.training", Boolean.class, false)) {
+      System.exit(SpringApplication.exit(context));
+    }
   }
 
   @GetMapping(value = "/", produces = MediaType.TEXT_PLAIN_VALUE)
@@ -0,0 +1,51 @@
+package ch.uzh.ifi.hase.soprafs23.audit;
+
+import ch.uzh.ifi.hase.soprafs23.constant.AuditEventType;
+
+/**
+ * AuditEvent
+ * One entry of the audit journal. The offset is the position of the event in the
+ * journal and only known for events that were read back (-1 otherwise).
+ */
+public final class AuditEvent {
+
+    private final long offset;
+    private final long timestamp;
+    private final AuditEventType type;
+    private final Long userId;
+    private final String username;
+
+    public AuditEvent(long offset, long timestamp, AuditEventType type, Long userId, String username) {
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public AuditEventType getType() {
+        return type;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditEvent{offset=" + offset + ", timestamp=" + timestamp + ", type=" + type
+                + ", userId=" + userId + ", username='" + username + "'}";
+    }
+}
@@ -0,0 +1,365 @@
+package ch.uzh.ifi.hase.soprafs23.audit;
+
+import ch.uzh.ifi.hase.soprafs23.constant.AuditEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * AuditJournal
+ * Append-only journal of the user lifecycle events (signup, login, logout, profile
+ * update). Request threads only put the event into an AuditRingBuffer; a single
+ * writer thread encodes the events and appends them to memory-mapped segment files
+ * of a fixed size, so no request ever waits for the disk. An idle writer parks until
+ * the next event is offered. If the buffer is full the
+ * event is dropped and counted (sopra.audit.dropped).
+ * Events recorded inside a transaction are only journaled once it has committed.
+ *
+ * A record is [int length][long timestamp][byte type][long userId][short n][n bytes username],
+ * the length covers everything after itself and 0 marks the end of a segment. The
+ * offset of a record is its position in the whole journal; a segment file is named
+ * after the offset of its first byte. The length is written last, so a reader never
+ * sees a half written record.
+ */
+@Component
+public class AuditJournal {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_SIZE = 4;
+    private static final int FIXED_PAYLOAD_SIZE = 8 + 1 + 8 + 2;
+    private static final long NO_USER = -1;
+    private static final AuditEventType[] TYPES = AuditEventType.values();
+
+    private static final Counter DROPPED = Counter.builder("sopra.audit.dropped")
+            .description("Audit events dropped because the journal writer could not keep up")
+            .register(Metrics.globalRegistry);
+
+    private final Logger log = LoggerFactory.getLogger(AuditJournal.class);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long forceIntervalNanos;
+    private final AuditRingBuffer ringBuffer;
+    private volatile boolean enabled;
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private Thread writer;
+    private volatile boolean running;
+    // set while the writer is about to park, a producer then unparks it
+    private volatile boolean writerWaiting;
+    // offset up to which complete records are visible to readers
+    private volatile long committedOffset;
+
+    // only used by the writer thread
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long segmentBase;
+
+    public AuditJournal(@Value("${sopra.app.audit.enabled:true}") boolean enabled,
+                        @Value("${sopra.app.audit.directory:${java.io.tmpdir}/sopra-audit}") String directory,
+                        @Value("${sopra.app.audit.segmentSize:67108864}") int segmentSize,
+                        @Value("${sopra.app.audit.bufferSize:65536}") int bufferSize,
+                        @Value("${sopra.app.audit.forceIntervalMs:1000}") long forceIntervalMillis) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.forceIntervalNanos = TimeUnit.MILLISECONDS.toNanos(forceIntervalMillis);
+        this.ringBuffer = new AuditRingBuffer(bufferSize);
+    }
+
+    /**
+     * Opens the last segment and continues after its last complete record. Only one
+     * instance can write a directory, a second one logs an error and journals nothing.
+     * The same holds if the directory cannot be written (e.g. outside /tmp on App
+     * Engine): the application starts without the journal.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("journal.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                lock = lockChannel.tryLock();
+            }
+            catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                log.error("The audit journal in {} is already written by another instance, audit events are not recorded", directory);
+                lockChannel.close();
+                enabled = false;
+                return;
+            }
+            List<Long> bases = segmentBases();
+            openSegment(bases.isEmpty() ? 0 : bases.get(bases.size() - 1));
+        }
+        catch (IOException e) {
+            log.error("The audit journal in {} cannot be opened, audit events are not recorded", directory, e);
+            closeQuietly();
+            enabled = false;
+            return;
+        }
+        int position = 0;
+        while (position + HEADER_SIZE <= segmentSize) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        segment.position(position);
+        committedOffset = segmentBase + position;
+
+        running = true;
+        writer = new Thread(this::writeLoop, "audit-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Audit journal in {} continues at offset {}", directory, committedOffset);
+    }
+
+    /**
+     * Journals the event once the current transaction, if any, has committed.
+     */
+    public void record(AuditEventType type, Long userId, String username) {
+        if (!enabled) {
+            return;
+        }
+        AuditEvent event = new AuditEvent(-1, System.currentTimeMillis(), type, userId, username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(event);
+                }
+            });
+        }
+        else {
+            offer(event);
+        }
+    }
+
+    /**
+     * Journals the event right away, also if the current transaction rolls back
+     * (e.g. a failed login).
+     */
+    public void recordNow(AuditEventType type, Long userId, String username) {
+        if (enabled) {
+            offer(new AuditEvent(-1, System.currentTimeMillis(), type, userId, username));
+        }
+    }
+
+    /**
+     * @return the offset after the last record that is readable
+     */
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    /**
+     * Hands the events from the offset on to the consumer, in the order they were
+     * written, and stops after maxEvents or at the end of the journal.
+     *
+     * @param fromOffset 0 or the offset of an event (e.g. the result of an earlier replay)
+     * @return the offset to continue the replay from
+     */
+    public long replay(long fromOffset, int maxEvents, Consumer<AuditEvent> consumer) throws IOException {
+        long end = committedOffset;
+        long offset = fromOffset;
+        int count = 0;
+        for (long base : segmentBases()) {
+            if (count >= maxEvents || offset >= end) {
+                break;
+            }
+            if (base + segmentSize <= offset) {
+                continue;
+            }
+            offset = Math.max(offset, base);
+            try (FileChannel reader = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = reader.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(reader.size(), segmentSize));
+                int position = (int) (offset - base);
+                while (count < maxEvents && base + position < end && position + HEADER_SIZE <= buffer.limit()) {
+                    int length = buffer.getInt(position);
+                    if (length <= 0) {
+                        break;
+                    }
+                    consumer.accept(decode(buffer, base + position, position + HEADER_SIZE));
+                    position += HEADER_SIZE + length;
+                    count++;
+                }
+                offset = count < maxEvents ? base + segmentSize : base + position;
+            }
+        }
+        return Math.min(offset, end);
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        lock.release();
+        lockChannel.close();
+    }
+
+    /**
+     * Releases what a failed start has opened.
+     */
+    private void closeQuietly() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (lockChannel != null) {
+                // also releases the lock
+                lockChannel.close();
+            }
+        }
+        catch (IOException e) {
+            log.warn("Could not close the audit journal in {}", directory, e);
+        }
+    }
+
+    private void offer(AuditEvent event) {
+        if (!ringBuffer.offer(event)) {
+            DROPPED.increment();
+        }
+        else if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void writeLoop() {
+        long lastForce = System.nanoTime();
+        boolean dirty = false;
+        try {
+            while (running || !ringBuffer.isEmpty()) {
+                AuditEvent event = ringBuffer.poll();
+                if (event != null) {
+                    append(event);
+                    dirty = true;
+                    continue;
+                }
+                if (dirty && System.nanoTime() - lastForce >= forceIntervalNanos) {
+                    segment.force();
+                    lastForce = System.nanoTime();
+                    dirty = false;
+                }
+                // the flag is set before the buffer is checked again and a producer checks it
+                // after publishing, so an event cannot slip in unnoticed
+                writerWaiting = true;
+                if (running && !ringBuffer.hasNext()) {
+                    if (dirty) {
+                        LockSupport.parkNanos(lastForce + forceIntervalNanos - System.nanoTime());
+                    }
+                    else {
+                        LockSupport.park(this);
+                    }
+                }
+                writerWaiting = false;
+            }
+            segment.force();
+            channel.close();
+        }
+        catch (IOException | RuntimeException e) {
+            log.error("The audit journal writer failed, audit events are not recorded anymore", e);
+            enabled = false;
+        }
+    }
+
+    private void append(AuditEvent event) throws IOException {
+        byte[] username = event.getUsername() == null ? new byte[0] : event.getUsername().getBytes(StandardCharsets.UTF_8);
+        if (username.length > 0xFFFF) {
+            // cut before the character the limit falls into, its continuation bytes start with 10
+            int cut = 0xFFFF;
+            while (cut > 0 && (username[cut] & 0xC0) == 0x80) {
+                cut--;
+            }
+            username = Arrays.copyOf(username, cut);
+        }
+        int length = FIXED_PAYLOAD_SIZE + username.length;
+        if (segment.remaining() < HEADER_SIZE + length) {
+            // the rest of the segment stays zero, which marks its end
+            openSegment(segmentBase + segmentSize);
+        }
+        int start = segment.position();
+        segment.position(start + HEADER_SIZE);
+        segment.putLong(event.getTimestamp());
+        segment.put((byte) event.getType().ordinal());
+        segment.putLong(event.getUserId() == null ? NO_USER : event.getUserId());
+        segment.putShort((short) username.length);
+        segment.put(username);
+        segment.putInt(start, length);
+        committedOffset = segmentBase + segment.position();
+    }
+
+    private AuditEvent decode(MappedByteBuffer buffer, long offset, int position) {
+        long timestamp = buffer.getLong(position);
+        AuditEventType type = TYPES[buffer.get(position + 8)];
+        long userId = buffer.getLong(position + 9);
+        int usernameLength = Short.toUnsignedInt(buffer.getShort(position + 17));
+        byte[] username = new byte[usernameLength];
+        for (int i = 0; i < usernameLength; i++) {
+            username[i] = buffer.get(position + FIXED_PAYLOAD_SIZE + i);
+        }
+        return new AuditEvent(offset, timestamp, type, userId == NO_USER ? null : userId,
+                new String(username, StandardCharsets.UTF_8));
+    }
+
+    private void openSegment(long base) throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+        channel = FileChannel.open(segmentPath(base), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentBase = base;
+    }
+
+    private Path segmentPath(long base) {
+        return directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> segmentBases() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        Collections.sort(bases);
+        return bases;
+    }
+}
@@ -0,0 +1,76 @@
+package ch.uzh.ifi.hase.soprafs23.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * AuditRingBuffer
+ * Bounded lock-free queue between the request threads (many producers) and the
+ * journal writer (the single consumer). A producer claims a sequence with a CAS,
+ * fills the slot and then publishes it; the consumer takes the slots strictly in
+ * sequence order. A full buffer rejects the event instead of blocking the producer.
+ */
+final class AuditRingBuffer {
+
+    private final AuditEvent[] slots;
+    private final int mask;
+    // per slot: the sequence + 1 of the event that was published into it
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    AuditRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AuditEvent[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(AuditEvent event) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= slots.length) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int index = (int) sequence & mask;
+        slots[index] = event;
+        published.set(index, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Only called by the consumer thread.
+     *
+     * @return the next event or null if the next slot is not published yet
+     */
+    AuditEvent poll() {
+        long sequence = consumed.get();
+        int index = (int) sequence & mask;
+        if (published.get(index) != sequence + 1) {
+            return null;
+        }
+        AuditEvent event = slots[index];
+        slots[index] = null;
+        consumed.lazySet(sequence + 1);
+        return event;
+    }
+
+    /**
+     * Only called by the consumer thread.
+     *
+     * @return true if the next poll returns an event
+     */
+    boolean hasNext() {
+        long sequence = consumed.get();
+        return published.get((int) sequence & mask) == sequence + 1;
+    }
+
+    boolean isEmpty() {
+        return consumed.get() == claimed.get();
+    }
+}
@@ -0,0 +1,68 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DataSourceRoutingConfig
+ * Splits the database work over two connection pools once a replica is configured
+ * (sopra.app.datasource.replica.url): read-only transactions (@Transactional(readOnly = true),
+ * e.g. listing and reading users) run on the replica, everything else on the primary
+ * (spring.datasource.*). The replica reuses the credentials of the primary unless
+ * they are set separately and gets its own pool size, so reads can be scaled out
+ * without taking connections away from the writes.
+ * Reads on the replica may lag behind the primary by the replication delay.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sopra.app.datasource.replica.url")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${sopra.app.datasource.replica.url}") String url,
+                                              @Value("${sopra.app.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${sopra.app.datasource.replica.password:${spring.datasource.password:}}") String password,
+                                              @Value("${sopra.app.datasource.replica.maximumPoolSize:10}") int maximumPoolSize) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(url).username(username).password(password).build();
+        dataSource.setPoolName("replica");
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(ReadWriteRoutingDataSource.PRIMARY, primaryDataSource);
+        targetDataSources.put(ReadWriteRoutingDataSource.REPLICA, replicaDataSource);
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource();
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+        // the pool is chosen with the first statement, when the transaction is known to be read-only
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,51 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HibernateCacheConfig
+ * Second-level cache of Hibernate backed by Caffeine through JCache. The regions of
+ * the User entity and of its natural id (username) are bounded in size and expire a
+ * fixed time after they were written, so entries that were changed outside of
+ * Hibernate are not served forever. Hit and miss counts are part of the Hibernate
+ * statistics (hibernate.second.level.cache.* and hibernate.cache.natural.id.* meters).
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    static final String USER_REGION = User.class.getName();
+    static final String USER_NATURAL_ID_REGION = User.class.getName() + "##NaturalId";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${sopra.app.userCache.maxSize:10000}") long maxSize,
+                                              @Value("${sopra.app.userCache.ttlSeconds:600}") long ttlSeconds) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        for (String region : new String[] {USER_REGION, USER_NATURAL_ID_REGION}) {
+            if (cacheManager.getCache(region) == null) {
+                CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+                configuration.setMaximumSize(OptionalLong.of(maxSize));
+                configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+                configuration.setStatisticsEnabled(true);
+                cacheManager.createCache(region, configuration);
+            }
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
@@ -0,0 +1,23 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * ReadWriteRoutingDataSource
+ * Hands out connections of the replica pool inside read-only transactions and of the
+ * primary pool everywhere else (read-write transactions, schema update, work outside
+ * of a transaction). The transaction is only marked read-only once it has begun, so
+ * this data source has to sit behind a LazyConnectionDataSourceProxy that fetches
+ * the connection with the first statement.
+ */
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? REPLICA : PRIMARY;
+    }
+}
@@ -0,0 +1,67 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * SchemaMigration
+ * Changes to an existing database that ddl-auto=update does not make. Runs after
+ * Hibernate has created or updated the schema and before the first request. Every
+ * step checks whether it is still needed, so the migration runs at every start.
+ */
+@Component
+public class SchemaMigration {
+
+    private final Logger log = LoggerFactory.getLogger(SchemaMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaMigration(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        // waits for Hibernate and its schema update, also if it is bootstrapped in the background
+        entityManagerFactory.getMetamodel();
+    }
+
+    @PostConstruct
+    public void migrate() {
+        restartUserIdSequence();
+        dropUserTokenColumn();
+    }
+
+    /**
+     * Users created before user_id_seq existed have ids the new sequence would hand out
+     * again. The pooled optimizer hands out the ID_ALLOCATION_SIZE ids up to the value
+     * it reads, so the sequence is moved to max(id) + ID_ALLOCATION_SIZE.
+     */
+    void restartUserIdSequence() {
+        Long maxId = jdbcTemplate.queryForObject("select max(id) from USER", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        Long next = jdbcTemplate.queryForObject("select next value for user_id_seq", Long.class);
+        if (next != null && next < maxId) {
+            long restartWith = maxId + User.ID_ALLOCATION_SIZE;
+            jdbcTemplate.execute("alter sequence user_id_seq restart with " + restartWith);
+            log.info("Restarted user_id_seq with {}, the highest user id is {}", restartWith, maxId);
+        }
+    }
+
+    /**
+     * The token is no longer stored (User.token is transient), but ddl-auto=update does
+     * not drop columns. The old TOKEN column is NOT NULL, so every insert would fail.
+     */
+    void dropUserTokenColumn() {
+        Integer columns = jdbcTemplate.queryForObject("select count(*) from INFORMATION_SCHEMA.COLUMNS " +
+                "where TABLE_NAME = 'USER' and COLUMN_NAME = 'TOKEN'", Integer.class);
+        if (columns != null && columns > 0) {
+            jdbcTemplate.execute("alter table USER drop column TOKEN");
+            log.info("Dropped the column USER.TOKEN");
+        }
+    }
+}
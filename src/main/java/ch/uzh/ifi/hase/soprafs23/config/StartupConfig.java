@@ -0,0 +1,32 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.security.jtw.TokenRevocationList;
+import ch.uzh.ifi.hase.soprafs23.service.PresenceRegistry;
+import ch.uzh.ifi.hase.soprafs23.service.UserEventBroadcaster;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * StartupConfig
+ * Startup timeline report and the exceptions to the lazy initialization of the fast
+ * profile (application-fast.properties). Beans with scheduled tasks are always
+ * created at startup: a lazy bean only gets its schedule once something uses it, so
+ * e.g. the presence changes of the PresenceRegistry would not be written. The same
+ * holds for the SchemaMigration, which has to run before the first insert.
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public StartupTimelineEndpoint startupTimelineEndpoint(ConfigurableListableBeanFactory beanFactory) {
+        return new StartupTimelineEndpoint(beanFactory.getApplicationStartup());
+    }
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBeansExcludeFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(PresenceRegistry.class, TokenRevocationList.class, UserEventBroadcaster.class,
+                SchemaMigration.class);
+    }
+}
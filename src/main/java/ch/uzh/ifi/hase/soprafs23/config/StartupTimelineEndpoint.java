@@ -0,0 +1,136 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.lang.Nullable;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * StartupTimelineEndpoint
+ * Report of the last startup at /actuator/startuptimeline: the time from the start of
+ * the JVM until the application was ready and the steps recorded by the
+ * BufferingApplicationStartup (bean instantiation, context refresh, ...), slowest
+ * first. Unlike the startup endpoint of Spring Boot 2.4 it does not drain the buffer,
+ * so the report can be read as often as needed, e.g. after every deployment.
+ * The steps of a nested bean are also part of the duration of the bean that needed it.
+ */
+@Endpoint(id = "startuptimeline")
+public class StartupTimelineEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final ApplicationStartup applicationStartup;
+    private volatile long readyAfterMillis = -1;
+
+    public StartupTimelineEndpoint(ApplicationStartup applicationStartup) {
+        this.applicationStartup = applicationStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ready() {
+        readyAfterMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * @param limit the number of steps to report, the slowest {@value #DEFAULT_LIMIT} if not set
+     */
+    @ReadOperation
+    public StartupTimelineReport timeline(@Nullable Integer limit) {
+        if (!(applicationStartup instanceof BufferingApplicationStartup)) {
+            return new StartupTimelineReport(null, readyAfterMillis, 0, new ArrayList<>());
+        }
+        StartupTimeline timeline = ((BufferingApplicationStartup) applicationStartup).getBufferedTimeline();
+        List<StartupTimelineStep> steps = timeline.getEvents().stream()
+                .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                .limit(limit == null ? DEFAULT_LIMIT : Math.max(0, limit))
+                .map(StartupTimelineStep::new)
+                .collect(Collectors.toList());
+        return new StartupTimelineReport(timeline.getStartTime(), readyAfterMillis, timeline.getEvents().size(), steps);
+    }
+
+    public static class StartupTimelineReport {
+
+        private final Instant startTime;
+        private final long readyAfterMillis;
+        private final int stepCount;
+        private final List<StartupTimelineStep> steps;
+
+        StartupTimelineReport(Instant startTime, long readyAfterMillis, int stepCount, List<StartupTimelineStep> steps) {
+            this.startTime = startTime;
+            this.readyAfterMillis = readyAfterMillis;
+            this.stepCount = stepCount;
+            this.steps = steps;
+        }
+
+        public Instant getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return the milliseconds from the start of the JVM until the application was ready, -1 while starting
+         */
+        public long getReadyAfterMillis() {
+            return readyAfterMillis;
+        }
+
+        public int getStepCount() {
+            return stepCount;
+        }
+
+        public List<StartupTimelineStep> getSteps() {
+            return steps;
+        }
+    }
+
+    public static class StartupTimelineStep {
+
+        private final long id;
+        private final Long parentId;
+        private final String name;
+        private final Map<String, String> tags = new LinkedHashMap<>();
+        private final double durationMillis;
+
+        StartupTimelineStep(StartupTimeline.TimelineEvent event) {
+            StartupStep step = event.getStartupStep();
+            this.id = step.getId();
+            this.parentId = step.getParentId();
+            this.name = step.getName();
+            step.getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+            this.durationMillis = event.getDuration().toNanos() / 1_000_000.0;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Long getParentId() {
+            return parentId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public double getDurationMillis() {
+            return durationMillis;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import org.apache.coyote.AbstractProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * VirtualThreadConfig
+ * Opt-in serving mode (sopra.app.virtualThreads=true) that runs every request, and
+ * with it the filter chain and the @Transactional service calls, on its own virtual
+ * thread instead of the fixed Tomcat pool. Blocking on H2 then no longer ties up a
+ * platform thread, so the Hikari pool size (spring.datasource.hikari.maximum-pool-size)
+ * becomes the actual limit of concurrent database work.
+ * The code is compiled for Java 17, virtual threads are looked up at runtime and the
+ * application refuses to start in this mode on a JVM older than 21.
+ */
+@Configuration
+@ConditionalOnProperty(name = "sopra.app.virtualThreads", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor("http-vt-");
+        log.info("Serving requests on virtual threads");
+        return executor;
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<AbstractProtocol<?>> virtualThreadProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * Async requests (the NDJSON export) continue on virtual threads as well.
+     */
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncSupport(ExecutorService virtualThreadExecutor) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(new TaskExecutorAdapter(virtualThreadExecutor));
+            }
+        };
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            // Thread.ofVirtual().name(namePrefix, 0).factory()
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("sopra.app.virtualThreads needs Java 21 or newer, running on " + Runtime.version(), e);
+        }
+    }
+}
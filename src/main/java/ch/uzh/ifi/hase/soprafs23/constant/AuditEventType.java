@@ -0,0 +1,8 @@
+package ch.uzh.ifi.hase.soprafs23.constant;
+
+/**
+ * Stored by its ordinal in the audit journal, new types have to be appended.
+ */
+public enum AuditEventType {
+  SIGNUP, LOGIN, LOGIN_FAILED, LOGOUT, PROFILE_UPDATE;
+}
@@ -1,20 +1,38 @@
 package ch.uzh.ifi.hase.soprafs23.controller;
 
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserListState;
+import ch.uzh.ifi.hase.soprafs23.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserBatchResultDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UsernameAvailabilityDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs23.service.PasswordHashingExecutor;
+import ch.uzh.ifi.hase.soprafs23.service.PresenceRegistry;
+import ch.uzh.ifi.hase.soprafs23.service.UserEventBroadcaster;
 import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.mapstruct.Context;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * User Controller
@@ -25,65 +43,266 @@ import java.util.List;
  */
 @RestController
 public class UserController {
+    private static final int MAX_PAGE_SIZE = 1000;
+    // every user of a batch costs a password hash on the hashing pool
+    static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final long INSTANCE_EPOCH = System.currentTimeMillis();
+
     private final UserService userService;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final PresenceRegistry presenceRegistry;
+    private final UserEventBroadcaster userEventBroadcaster;
+    private final ObjectMapper objectMapper;
 
-    UserController(UserService userService) {
+    UserController(UserService userService, PasswordHashingExecutor passwordHashingExecutor,
+                   PresenceRegistry presenceRegistry, UserEventBroadcaster userEventBroadcaster,
+                   ObjectMapper objectMapper) {
         this.userService = userService;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.presenceRegistry = presenceRegistry;
+        this.userEventBroadcaster = userEventBroadcaster;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/users")
-    @ResponseStatus(HttpStatus.OK)
-    @ResponseBody
-    public List<UserGetDTO> getAllUsers() {
-        // fetch all users in the internal representation
-        List<User> users = userService.getUsers();
-        List<UserGetDTO> userGetDTOs = new ArrayList<>();
-
-        // convert each user to the API representation
-        for (User user : users) {
-            userGetDTOs.add(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user));
+    public ResponseEntity<List<UserGetDTO>> getAllUsers(@RequestParam(required = false) Integer limit,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // read before the query: a change during the query only makes the next poll fetch again
+        String eTag = listETag();
+        if (matches(ifNoneMatch, eTag, true)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
         }
-        return userGetDTOs;
+        if (limit == null && after == null) {
+            // fetch all users as read-only projections
+            return ResponseEntity.ok().eTag(eTag).body(convertUsers(userService.getUserSummaries()));
+        }
+        int pageSize = limit == null ? MAX_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The limit has to be between 1 and " + MAX_PAGE_SIZE);
+        }
+        // fetch one more user than requested to know whether there is a next page
+        List<UserSummary> users = userService.getUserSummariesAfter(decodeCursor(after), pageSize + 1);
+        HttpHeaders headers = new HttpHeaders();
+        if (users.size() > pageSize) {
+            users = users.subList(0, pageSize);
+            String nextCursor = encodeCursor(users.get(pageSize - 1).getId());
+            headers.add("Access-Control-Expose-Headers", "Link, Next-Cursor");
+            headers.add("Next-Cursor", nextCursor);
+            headers.add(HttpHeaders.LINK, "</users?limit=" + pageSize + "&after=" + nextCursor + ">; rel=\"next\"");
+        }
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).eTag(eTag).body(convertUsers(users));
+    }
+
+    /**
+     * Streams all users as newline delimited JSON. The users are read from a database
+     * cursor and written one by one, so the full list is never built in memory.
+     */
+    @GetMapping(value = "/users", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = outputStream -> {
+            userService.streamUsers(user -> {
+                try {
+                    outputStream.write(objectMapper.writeValueAsBytes(withLiveStatus(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user))));
+                    outputStream.write('\n');
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            outputStream.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * Server-Sent Events stream of user changes. Every event contains only the fields
+     * of the UserGetDTO that changed, together with the username.
+     */
+    @GetMapping(value = "/users/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUserEvents() {
+        return userEventBroadcaster.subscribe();
     }
 
     @PostMapping("/users")
     @ResponseStatus(HttpStatus.CREATED)
     @ResponseBody
-    public ResponseEntity<?> createUser(@RequestBody UserPostDTO userPostDTO) {
+    public CompletableFuture<ResponseEntity<?>> createUser(@RequestBody UserPostDTO userPostDTO) {
         // convert API user to internal representation
         User userInput = DTOMapper.INSTANCE.convertUserPostDTOtoEntity(userPostDTO);
-        // create user
-        User createdUser = userService.createUser(userInput);
-        // add headers
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Access-Control-Expose-Headers", "Access-Token, Uid");
-        headers.add("Access-Token", createdUser.getToken());
-        // convert internal representation of user back to API
-        return ResponseEntity.status(HttpStatus.CREATED).headers(headers).body(DTOMapper.INSTANCE.convertEntityToUserGetDTO(createdUser));
+        // create user on the hashing pool, the request thread is released in the meantime
+        return passwordHashingExecutor.submit(() -> userService.createUser(userInput)).thenApply(createdUser -> {
+            // add headers
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("Access-Control-Expose-Headers", "Access-Token, Uid");
+            headers.add("Access-Token", createdUser.getToken());
+            // convert internal representation of user back to API
+            return ResponseEntity.status(HttpStatus.CREATED).headers(headers).body(DTOMapper.INSTANCE.convertEntityToUserGetDTO(createdUser));
+        });
+    }
+
+    @PostMapping("/users/batch")
+    public CompletableFuture<ResponseEntity<List<UserBatchResultDTO>>> createUsers(@RequestBody List<UserPostDTO> userPostDTOs) {
+        if (userPostDTOs.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch can contain at most " + MAX_BATCH_SIZE + " users");
+        }
+        // convert API users to internal representation
+        List<User> userInputs = new ArrayList<>(userPostDTOs.size());
+        for (UserPostDTO userPostDTO : userPostDTOs) {
+            userInputs.add(DTOMapper.INSTANCE.convertUserPostDTOtoEntity(userPostDTO));
+        }
+        // the passwords are hashed in parallel on the hashing pool, a full pool rejects the batch with 503
+        return userService.createUsers(userInputs).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Autocomplete for usernames: the users whose username starts with the prefix,
+     * ignoring case and ordered by username.
+     */
+    @GetMapping("/users/search")
+    public List<UserGetDTO> searchUsers(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        if (prefix.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The prefix must not be empty");
+        }
+        if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The limit has to be between 1 and " + MAX_SEARCH_LIMIT);
+        }
+        return convertUsers(userService.searchUserSummaries(prefix, limit));
+    }
+
+    /**
+     * Lets the signup form check a username while it is typed. Most free usernames are
+     * answered from memory without a database query.
+     */
+    @GetMapping("/users/availability")
+    public UsernameAvailabilityDTO getUsernameAvailability(@RequestParam String username) {
+        if (username.trim().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The username must not be empty");
+        }
+        return new UsernameAvailabilityDTO(username, userService.isUsernameAvailable(username));
     }
 
     @GetMapping("/users/{id}")
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public ResponseEntity<?> getUserById(@PathVariable Long id, @Context HttpServletRequest request) {
-        // create user
-        User currentUser = userService.getById(id);
-        // convert internal representation of user back to API
+    public ResponseEntity<?> getUserById(@PathVariable Long id, @Context HttpServletRequest request,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // fetch the user as read-only projection
+        UserSummary currentUser = userService.getSummaryById(id);
+        UserGetDTO userGetDTO = withLiveStatus(DTOMapper.INSTANCE.convertUserSummaryToUserGetDTO(currentUser));
+        String eTag = userETag(currentUser.getVersion(), userGetDTO.getStatus());
         HttpHeaders headers = new HttpHeaders();
-        headers.add("Access-Control-Expose-Headers", "Edit-Access, Uid");
-        headers.add("Edit-Access", String.valueOf(userService.editAccess(currentUser, request)));
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(DTOMapper.INSTANCE.convertEntityToUserGetDTO(currentUser));
+        headers.add("Access-Control-Expose-Headers", "Edit-Access, Uid, ETag");
+        headers.add("Edit-Access", String.valueOf(userService.editAccess(currentUser.getUsername(), request)));
+        if (matches(ifNoneMatch, eTag, true)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).eTag(eTag).build();
+        }
+        // convert internal representation of user back to API
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).eTag(eTag).body(userGetDTO);
     }
 
     @PutMapping("/users/{id}")
-    public ResponseEntity<?> updateUserById(@PathVariable Long id, @RequestBody UserPutDTO userPutDTO, @Context HttpServletRequest request) {
-        User currentUser = userService.getById(id);
+    public ResponseEntity<?> updateUserById(@PathVariable Long id, @RequestBody UserPutDTO userPutDTO, @Context HttpServletRequest request,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         User userUpdates = DTOMapper.INSTANCE.convertUserPutDTOtoEntity(userPutDTO);
-        currentUser = userService.updateUser(currentUser, userUpdates, request);
+        // the user is loaded and checked against If-Match in the transaction of the update
+        User currentUser = userService.updateUser(id, userUpdates, request,
+                user -> ifMatch == null || matches(ifMatch, userETag(user.getVersion(), liveStatus(user)), false));
         HttpHeaders headers = new HttpHeaders();
-        headers.add("Access-Control-Expose-Headers", "Access-Token, Edit-Access, Uid");
+        headers.add("Access-Control-Expose-Headers", "Access-Token, Edit-Access, Uid, ETag");
         headers.add("Access-Token", currentUser.getToken());
         headers.add("Edit-Access", "true"); // value can be hardcoded as the check is done in update user
-        return ResponseEntity.noContent().headers(headers).build();
+        return ResponseEntity.noContent().headers(headers).eTag(userETag(currentUser.getVersion(), liveStatus(currentUser))).build();
+    }
+
+    private List<UserGetDTO> convertUsers(List<UserSummary> users) {
+        List<UserGetDTO> userGetDTOs = new ArrayList<>(users.size());
+        // convert each user to the API representation
+        for (UserSummary user : users) {
+            userGetDTOs.add(withLiveStatus(DTOMapper.INSTANCE.convertUserSummaryToUserGetDTO(user)));
+        }
+        return userGetDTOs;
+    }
+
+    /**
+     * The status in the database lags behind by up to one flush of the presence
+     * registry, the registry itself is always up to date.
+     */
+    private UserGetDTO withLiveStatus(UserGetDTO userGetDTO) {
+        UserStatus liveStatus = presenceRegistry.statusOf(userGetDTO.getUsername());
+        if (liveStatus != null) {
+            userGetDTO.setStatus(liveStatus);
+        }
+        return userGetDTO;
+    }
+
+    private UserStatus liveStatus(User user) {
+        UserStatus liveStatus = presenceRegistry.statusOf(user.getUsername());
+        return liveStatus != null ? liveStatus : user.getStatus();
+    }
+
+    /**
+     * The representation of a single user changes with its version and with its live
+     * status, which is written behind without increasing the version.
+     */
+    private static String userETag(Long version, UserStatus status) {
+        return "\"" + version + "-" + status + "\"";
+    }
+
+    /**
+     * The user list is derived from the database, which all instances share, so the
+     * ETag is derived from it as well: a change made through another instance changes
+     * the aggregates of the USER table. The live status from the presence registry of
+     * this instance is only written behind, its changes are covered by the revision of
+     * the published changes (with the start time of the instance, so a revision from
+     * before a restart or of another instance never matches).
+     */
+    private String listETag() {
+        UserListState state = userService.getUserListState();
+        return "\"" + Long.toString(state.getUserCount(), 36) + "." + Long.toString(state.getMaxId(), 36)
+                + "." + Long.toString(state.getVersionSum(), 36) + "." + Long.toString(state.getOnlineCount(), 36)
+                + "." + Long.toString(state.getOnlineIdSum(), 36)
+                + "-" + Long.toString(INSTANCE_EPOCH, 36) + "." + userEventBroadcaster.getRevision() + "\"";
+    }
+
+    /**
+     * @return true if the If-None-Match or If-Match header contains the ETag or is *.
+     * If-None-Match uses the weak comparison (W/ is ignored), If-Match the strong one.
+     */
+    private static boolean matches(String conditionHeader, String eTag, boolean weakComparison) {
+        if (conditionHeader == null) {
+            return false;
+        }
+        for (String candidate : conditionHeader.split(",")) {
+            String tag = candidate.trim();
+            if (weakComparison && tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The cursor is the id of the last user of the previous page, encoded so that
+     * clients treat it as an opaque value.
+     */
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        }
+        catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The cursor " + cursor + " is not valid");
+        }
     }
 }
@@ -2,6 +2,11 @@ package ch.uzh.ifi.hase.soprafs23.entity;
 
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.Date;
@@ -20,14 +25,23 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "USER")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class User implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // pooled sequence: one sequence call per 50 ids, which also allows batched inserts
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_id_generator")
+    @SequenceGenerator(name = "user_id_generator", sequenceName = "user_id_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
+    // mutable natural id: lookups by username are served from the natural-id cache
+    @NaturalId(mutable = true)
     @Column(nullable = false, unique = true)
     private String username;
 
@@ -40,12 +54,22 @@ public class User implements Serializable {
     @Column(nullable = false)
     private Date creationDate;
 
-    @Column(nullable = false, unique = true)
+    // the token itself is not stored, only its version: increasing it revokes all issued tokens
+    @Transient
     private String token;
 
-    @Column(nullable = false)
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int tokenVersion;
+
+    // owned by the PresenceRegistry, which writes it in bulk: entity updates never overwrite it
+    @Column(nullable = false, updatable = false)
     private UserStatus status;
 
+    // optimistic locking: increased with every update, also the strong ETag of the user
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     public Long getId() {
         return id;
     }
@@ -70,6 +94,22 @@ public class User implements Serializable {
         this.token = token;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(int tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
     public UserStatus getStatus() {
         return status;
     }
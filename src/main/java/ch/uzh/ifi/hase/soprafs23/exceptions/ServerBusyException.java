@@ -0,0 +1,30 @@
+package ch.uzh.ifi.hase.soprafs23.exceptions;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when a bounded worker pool is saturated. Results in a 503 response with a
+ * Retry-After header so clients back off instead of queueing up on the server.
+ */
+public class ServerBusyException extends ResponseStatusException {
+
+    private final long retryAfterSeconds;
+
+    public ServerBusyException(String reason, long retryAfterSeconds) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, reason);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
@@ -0,0 +1,59 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+/**
+ * RepositoryMetricsPostProcessor
+ * Adds a timer to every method of the Spring Data repositories, tagged with the
+ * repository, the method and the outcome (ok or the simple name of the exception).
+ * Spring Boot 2.4 has no repository metrics of its own, so the timing advice is
+ * added to the proxies that Spring Data already creates.
+ */
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof Repository && bean instanceof Advised) {
+            ((Advised) bean).addAdvice(0, new TimingInterceptor(beanName));
+        }
+        return bean;
+    }
+
+    private static final class TimingInterceptor implements MethodInterceptor {
+
+        private final String repository;
+
+        private TimingInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Timer.Sample sample = Timer.start();
+            String outcome = "ok";
+            try {
+                return invocation.proceed();
+            }
+            catch (Throwable e) {
+                outcome = e.getClass().getSimpleName();
+                throw e;
+            }
+            finally {
+                sample.stop(Timer.builder("sopra.repository")
+                        .description("Time spent in a repository method")
+                        .tag("repository", repository)
+                        .tag("method", invocation.getMethod().getName())
+                        .tag("outcome", outcome)
+                        .register(Metrics.globalRegistry));
+            }
+        }
+    }
+}
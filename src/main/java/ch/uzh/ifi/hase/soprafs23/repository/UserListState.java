@@ -0,0 +1,20 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+/**
+ * Aggregates over all rows of the USER table
+ * Any insert, delete or versioned update changes the count, the highest id or the
+ * sum of the versions. The status is written behind without increasing the version,
+ * so the online users are aggregated separately.
+ */
+public interface UserListState {
+
+    Long getUserCount();
+
+    Long getMaxId();
+
+    Long getVersionSum();
+
+    Long getOnlineCount();
+
+    Long getOnlineIdSum();
+}
@@ -1,13 +1,71 @@
 package ch.uzh.ifi.hase.soprafs23.repository;
 
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository("userRepository")
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     Optional<User> findById(Long id);
-    Optional<User> findByUsername(String username);
+    @Query("select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+    // has to be consumed inside a transaction, rows are fetched from the driver in chunks
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"), @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAllOrderById();
+    // has to be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select u.username from User u")
+    Stream<String> streamAllUsernames();
+
+    @Query("select u.id as id, u.username as username, u.status as status, u.birthday as birthday, " +
+            "u.creationDate as creationDate, u.version as version from User u")
+    List<UserSummary> findAllSummaries();
+
+    @Query("select u.id as id, u.username as username, u.status as status, u.birthday as birthday, " +
+            "u.creationDate as creationDate, u.version as version from User u where u.id = :id")
+    Optional<UserSummary> findSummaryById(@Param("id") Long id);
+
+    // keyset page: only the page size of the pageable is used, never an offset
+    @Query("select u.id as id, u.username as username, u.status as status, u.birthday as birthday, " +
+            "u.creationDate as creationDate, u.version as version from User u where u.id > :id order by u.id")
+    List<UserSummary> findSummariesAfter(@Param("id") Long id, Pageable pageable);
+
+    @Query("select u.id as id, u.username as username, u.status as status, u.birthday as birthday, " +
+            "u.creationDate as creationDate, u.version as version from User u where u.id in :ids")
+    List<UserSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // has to be consumed inside a transaction, rows are fetched from the driver in chunks
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("select u.id as id, u.username as username, u.status as status, u.birthday as birthday, " +
+            "u.creationDate as creationDate, u.version as version from User u")
+    Stream<UserSummary> streamAllSummaries();
+
+    // one row, read instead of the whole list to tell whether the list has changed
+    @Query("select count(u) as userCount, coalesce(max(u.id), 0) as maxId, coalesce(sum(u.version), 0) as versionSum, " +
+            "coalesce(sum(case when u.status = :online then 1 else 0 end), 0) as onlineCount, " +
+            "coalesce(sum(case when u.status = :online then u.id else 0 end), 0) as onlineIdSum from User u")
+    UserListState findListState(@Param("online") UserStatus online);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update User u set u.password = :password where u.id = :id")
+    int updatePassword(@Param("id") Long id, @Param("password") String password);
+
+    @Query("select u.username from User u where u.status = :status")
+    List<String> findUsernamesByStatus(@Param("status") UserStatus status);
 }
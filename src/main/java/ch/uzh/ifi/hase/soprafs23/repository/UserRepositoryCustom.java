@@ -0,0 +1,27 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Lookups of the UserRepository that need the Hibernate session directly.
+ *
+ * @see UserRepositoryCustomImpl
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Loads the user through its natural id, which is answered from the second-level
+     * cache when the user was loaded or stored before.
+     */
+    Optional<User> findByUsername(String username);
+
+    /**
+     * Writes the status of all given users with a single UPDATE, without evicting the
+     * users from the second-level cache.
+     */
+    int updateStatusForUsernames(UserStatus status, Collection<String> usernames);
+}
@@ -0,0 +1,45 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collection;
+import java.util.Optional;
+
+class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    // not a table, the status UPDATE is registered under this space instead of USER
+    private static final String STATUS_QUERY_SPACE = "USER_STATUS";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByUsername(String username) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).loadOptional(username);
+    }
+
+    /**
+     * Hibernate evicts the whole User region after a bulk UPDATE on the USER table,
+     * which the presence flush would do every second. The cached status may lag
+     * behind: it is never written back (the column is not updatable) and the live
+     * status is always read from the PresenceRegistry.
+     */
+    @Override
+    @Transactional
+    public int updateStatusForUsernames(UserStatus status, Collection<String> usernames) {
+        return entityManager.createNativeQuery("update USER set status = :status where username in (:usernames)")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(STATUS_QUERY_SPACE)
+                // the status is mapped as ordinal
+                .setParameter("status", status.ordinal())
+                .setParameterList("usernames", usernames)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,26 @@
+package ch.uzh.ifi.hase.soprafs23.repository;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+
+import java.util.Date;
+
+/**
+ * Closed projection of the User entity
+ * Only contains the columns that are exposed through the API, the password and
+ * the token are never selected. Projections are not managed by the persistence
+ * context and therefore never dirty checked.
+ */
+public interface UserSummary {
+
+    Long getId();
+
+    String getUsername();
+
+    UserStatus getStatus();
+
+    Date getBirthday();
+
+    Date getCreationDate();
+
+    Long getVersion();
+}
@@ -0,0 +1,43 @@
+package ch.uzh.ifi.hase.soprafs23.rest.dto;
+
+import ch.uzh.ifi.hase.soprafs23.constant.BatchItemStatus;
+
+public class UserBatchResultDTO {
+
+    private String username;
+    private Long id;
+    private BatchItemStatus status;
+
+    public UserBatchResultDTO() {
+    }
+
+    public UserBatchResultDTO(String username, Long id, BatchItemStatus status) {
+        this.username = username;
+        this.id = id;
+        this.status = status;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public BatchItemStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BatchItemStatus status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,31 @@
+package ch.uzh.ifi.hase.soprafs23.rest.dto;
+
+public class UsernameAvailabilityDTO {
+
+    private String username;
+    private boolean available;
+
+    public UsernameAvailabilityDTO() {
+    }
+
+    public UsernameAvailabilityDTO(String username, boolean available) {
+        this.username = username;
+        this.available = available;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+}
@@ -0,0 +1,50 @@
+package ch.uzh.ifi.hase.soprafs23.rest.mapper;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPutDTO;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * TimedDTOMapper
+ * Decorates the generated DTOMapper with one timer per conversion, so large list
+ * responses show up as mapping time instead of being hidden in the controller.
+ */
+public abstract class TimedDTOMapper implements DTOMapper {
+
+  private final DTOMapper delegate;
+
+  protected TimedDTOMapper(DTOMapper delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public User convertUserPostDTOtoEntity(UserPostDTO userPostDTO) {
+    return timer("convertUserPostDTOtoEntity").record(() -> delegate.convertUserPostDTOtoEntity(userPostDTO));
+  }
+
+  @Override
+  public User convertUserPutDTOtoEntity(UserPutDTO userPutDTO) {
+    return timer("convertUserPutDTOtoEntity").record(() -> delegate.convertUserPutDTOtoEntity(userPutDTO));
+  }
+
+  @Override
+  public UserGetDTO convertEntityToUserGetDTO(User user) {
+    return timer("convertEntityToUserGetDTO").record(() -> delegate.convertEntityToUserGetDTO(user));
+  }
+
+  @Override
+  public UserGetDTO convertUserSummaryToUserGetDTO(UserSummary userSummary) {
+    return timer("convertUserSummaryToUserGetDTO").record(() -> delegate.convertUserSummaryToUserGetDTO(userSummary));
+  }
+
+  private static Timer timer(String conversion) {
+    return Timer.builder("sopra.dto.mapping")
+        .description("Time spent converting between entities and DTOs")
+        .tag("conversion", conversion)
+        .register(Metrics.globalRegistry);
+  }
+}
@@ -0,0 +1,203 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LoginRateLimitFilter
+ * Runs in front of the authentication for POST /login, POST /users (signup) and
+ * POST /users/batch, the endpoints that hash passwords. Requests over the limit of
+ * the LoginRateLimiter are answered with 429 and a Retry-After header before any
+ * password is hashed. GET /users/availability is limited per client IP as well, with
+ * a separate and much larger bucket, as the signup form calls it on every keystroke.
+ * The username of a login and the number of users of a batch are read from the body,
+ * which is buffered so the controller can still read it. Only
+ * bodies up to a few KB (a batch: up to a few KB per user) are buffered, larger ones
+ * are rejected with 413. The client IP is the remote address Tomcat resolved from
+ * X-Forwarded-For (server.forward-headers-strategy), not the address of the proxy.
+ */
+@Component
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private static final String LOGIN_PATH = "/login";
+    private static final String SIGNUP_PATH = "/users";
+    private static final String BATCH_SIGNUP_PATH = "/users/batch";
+    private static final String AVAILABILITY_PATH = "/users/availability";
+
+    private final LoginRateLimiter loginRateLimiter;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxBodyBytes;
+    private final int maxBatchBodyBytes;
+
+    public LoginRateLimitFilter(LoginRateLimiter loginRateLimiter, ObjectMapper objectMapper,
+                                @Value("${sopra.app.rateLimit.enabled:true}") boolean enabled,
+                                @Value("${sopra.app.rateLimit.maxBodyBytes:4096}") int maxBodyBytes,
+                                @Value("${sopra.app.rateLimit.maxBatchBodyBytes:65536}") int maxBatchBodyBytes) {
+        this.loginRateLimiter = loginRateLimiter;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxBatchBodyBytes = maxBatchBodyBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getServletPath();
+        if (HttpMethod.GET.matches(request.getMethod())) {
+            return !AVAILABILITY_PATH.equals(path);
+        }
+        return !HttpMethod.POST.matches(request.getMethod())
+                || !LOGIN_PATH.equals(path) && !SIGNUP_PATH.equals(path) && !BATCH_SIGNUP_PATH.equals(path);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        String path = request.getServletPath();
+        long retryAfterSeconds;
+        if (LOGIN_PATH.equals(path) || BATCH_SIGNUP_PATH.equals(path)) {
+            byte[] body = readBody(request, LOGIN_PATH.equals(path) ? maxBodyBytes : maxBatchBodyBytes);
+            if (body == null) {
+                reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "The request body is too large");
+                return;
+            }
+            request = new BufferedBodyRequest(request, body);
+            retryAfterSeconds = LOGIN_PATH.equals(path)
+                    ? loginRateLimiter.acquire(request.getRemoteAddr(), usernameOf(body))
+                    : loginRateLimiter.acquireForSignups(request.getRemoteAddr(), batchSizeOf(body));
+        }
+        else if (AVAILABILITY_PATH.equals(path)) {
+            retryAfterSeconds = loginRateLimiter.acquireForLookup(request.getRemoteAddr());
+        }
+        else {
+            retryAfterSeconds = loginRateLimiter.acquire(request.getRemoteAddr(), null);
+        }
+        if (retryAfterSeconds > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many attempts, please try again later");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * Written directly, an error dispatch would run through the authentication again.
+     */
+    private static void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase()
+                + "\",\"message\":\"" + message + "\"}");
+    }
+
+    /**
+     * @return the body, or null if it is longer than maxBytes. At most maxBytes + 1 bytes
+     * are read, whatever the client sends or claims in Content-Length.
+     */
+    private static byte[] readBody(HttpServletRequest request, int maxBytes) throws IOException {
+        if (request.getContentLengthLong() > maxBytes) {
+            return null;
+        }
+        byte[] body = request.getInputStream().readNBytes(maxBytes + 1);
+        return body.length > maxBytes ? null : body;
+    }
+
+    private String usernameOf(byte[] body) {
+        JsonNode tree = readTree(body);
+        JsonNode username = tree == null ? null : tree.get("username");
+        return username == null || !username.isTextual() ? null : username.asText();
+    }
+
+    private int batchSizeOf(byte[] body) {
+        JsonNode tree = readTree(body);
+        return tree == null || !tree.isArray() ? 1 : tree.size();
+    }
+
+    private JsonNode readTree(byte[] body) {
+        try {
+            return objectMapper.readTree(body);
+        }
+        catch (IOException e) {
+            // the controller rejects the malformed body, only the IP is limited
+            return null;
+        }
+    }
+
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // the whole body is already buffered
+                    try {
+                        readListener.onAllDataAvailable();
+                    }
+                    catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return input.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * LoginRateLimiter
+ * Limits how often the password hashing endpoints (login and signup) can be called.
+ * Every client IP and every username that is logged in to has its own token bucket;
+ * a request takes one token from each and is rejected when one of them is empty.
+ * Accounts are locked for a while after too many failed logins in a row, so the
+ * password of a locked account is not even checked. Buckets and failure counters are
+ * kept in bounded LRU maps (see StripedLruMap).
+ * The username availability check, which the signup form calls while the username is
+ * typed, has a much larger bucket per IP of its own, so it never uses up the tokens of
+ * the signup that follows.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final LongSupplier nanoClock;
+    private final int ipCapacity;
+    private final long ipNanosPerToken;
+    private final int usernameCapacity;
+    private final long usernameNanosPerToken;
+    private final int maxFailures;
+    private final long lockoutNanos;
+    private final int lookupCapacity;
+    private final long lookupNanosPerToken;
+
+    private final StripedLruMap<TokenBucket> bucketsByIp;
+    private final StripedLruMap<TokenBucket> lookupBucketsByIp;
+    private final StripedLruMap<TokenBucket> bucketsByUsername;
+    private final StripedLruMap<Failures> failuresByUsername;
+
+    @Autowired
+    public LoginRateLimiter(@Value("${sopra.app.rateLimit.ip.capacity:20}") int ipCapacity,
+                            @Value("${sopra.app.rateLimit.ip.perMinute:60}") int ipPerMinute,
+                            @Value("${sopra.app.rateLimit.username.capacity:5}") int usernameCapacity,
+                            @Value("${sopra.app.rateLimit.username.perMinute:10}") int usernamePerMinute,
+                            @Value("${sopra.app.rateLimit.maxFailures:5}") int maxFailures,
+                            @Value("${sopra.app.rateLimit.lockoutMs:60000}") long lockoutMillis,
+                            @Value("${sopra.app.rateLimit.availability.capacity:100}") int lookupCapacity,
+                            @Value("${sopra.app.rateLimit.availability.perMinute:600}") int lookupPerMinute,
+                            @Value("${sopra.app.rateLimit.maxEntries:100000}") int maxEntries,
+                            @Value("${sopra.app.rateLimit.stripes:64}") int stripes) {
+        this(System::nanoTime, ipCapacity, ipPerMinute, usernameCapacity, usernamePerMinute,
+                maxFailures, lockoutMillis, lookupCapacity, lookupPerMinute, maxEntries, stripes);
+    }
+
+    LoginRateLimiter(LongSupplier nanoClock, int ipCapacity, int ipPerMinute, int usernameCapacity, int usernamePerMinute,
+                     int maxFailures, long lockoutMillis, int lookupCapacity, int lookupPerMinute, int maxEntries, int stripes) {
+        this.nanoClock = nanoClock;
+        this.ipCapacity = ipCapacity;
+        this.ipNanosPerToken = TimeUnit.MINUTES.toNanos(1) / ipPerMinute;
+        this.usernameCapacity = usernameCapacity;
+        this.usernameNanosPerToken = TimeUnit.MINUTES.toNanos(1) / usernamePerMinute;
+        this.maxFailures = maxFailures;
+        this.lockoutNanos = TimeUnit.MILLISECONDS.toNanos(lockoutMillis);
+        this.lookupCapacity = lookupCapacity;
+        this.lookupNanosPerToken = TimeUnit.MINUTES.toNanos(1) / lookupPerMinute;
+        this.bucketsByIp = new StripedLruMap<>(stripes, maxEntries);
+        this.lookupBucketsByIp = new StripedLruMap<>(stripes, maxEntries);
+        this.bucketsByUsername = new StripedLruMap<>(stripes, maxEntries);
+        this.failuresByUsername = new StripedLruMap<>(stripes, maxEntries);
+    }
+
+    /**
+     * Takes a token for the client IP and, if given, for the username.
+     *
+     * @param username the account that is logged in to, null for a signup
+     * @return 0 if the request may proceed, otherwise the seconds after which it may be retried
+     */
+    public long acquire(String clientIp, String username) {
+        return acquire(clientIp, username, 1);
+    }
+
+    /**
+     * Takes one token of the client IP per password hash of the request (e.g. per user of
+     * a batch signup), at most a full bucket.
+     */
+    public long acquireForSignups(String clientIp, int signups) {
+        return acquire(clientIp, null, Math.max(1, Math.min(signups, ipCapacity)));
+    }
+
+    /**
+     * Takes a token of the client IP for a username availability check, from a bucket
+     * that is separate from the one of login and signup.
+     */
+    public long acquireForLookup(String clientIp) {
+        long now = nanoClock.getAsLong();
+        long waitNanos = lookupBucketsByIp.compute(clientIp, () -> new TokenBucket(lookupCapacity, now),
+                bucket -> bucket.tryTake(now, lookupCapacity, lookupNanosPerToken, 1));
+        return waitNanos > 0 ? reject("lookup", waitNanos) : 0;
+    }
+
+    private long acquire(String clientIp, String username, int ipTokens) {
+        long now = nanoClock.getAsLong();
+        if (username != null) {
+            long lockedNanos = failuresByUsername.computeIfPresent(username, failures -> failures.lockedFor(now), 0L);
+            if (lockedNanos > 0) {
+                return reject("locked", lockedNanos);
+            }
+        }
+        long waitNanos = bucketsByIp.compute(clientIp, () -> new TokenBucket(ipCapacity, now),
+                bucket -> bucket.tryTake(now, ipCapacity, ipNanosPerToken, ipTokens));
+        if (waitNanos > 0) {
+            return reject("ip", waitNanos);
+        }
+        if (username != null) {
+            waitNanos = bucketsByUsername.compute(username, () -> new TokenBucket(usernameCapacity, now),
+                    bucket -> bucket.tryTake(now, usernameCapacity, usernameNanosPerToken, 1));
+            if (waitNanos > 0) {
+                return reject("username", waitNanos);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Counts a failed login, the account is locked once maxFailures are reached.
+     */
+    public void recordFailure(String username) {
+        if (username == null) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        failuresByUsername.compute(username, Failures::new, failures -> {
+            if (failures.lockedFor(now) <= 0 && ++failures.count >= maxFailures) {
+                failures.locked = true;
+                failures.lockedUntil = now + lockoutNanos;
+                failures.count = 0;
+            }
+            return null;
+        });
+    }
+
+    public void recordSuccess(String username) {
+        if (username != null) {
+            failuresByUsername.remove(username);
+        }
+    }
+
+    private static long reject(String reason, long waitNanos) {
+        Metrics.counter("sopra.ratelimit.rejected", "reason", reason).increment();
+        // rounded up, a client retrying after this many seconds gets through
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private static final class TokenBucket {
+
+        private double tokens;
+        private long refilledAt;
+
+        private TokenBucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        /**
+         * @return 0 if the tokens were taken, otherwise the nanos until enough tokens are available
+         */
+        private long tryTake(long now, int capacity, long nanosPerToken, int count) {
+            tokens = Math.min(capacity, tokens + (double) (now - refilledAt) / nanosPerToken);
+            refilledAt = now;
+            if (tokens >= count) {
+                tokens -= count;
+                return 0;
+            }
+            return (long) Math.ceil((count - tokens) * nanosPerToken);
+        }
+    }
+
+    private static final class Failures {
+
+        private int count;
+        private boolean locked;
+        private long lockedUntil;
+
+        /**
+         * @return the nanos until the lock is lifted, 0 or less if the account is not locked
+         */
+        private long lockedFor(long now) {
+            return locked ? lockedUntil - now : 0;
+        }
+    }
+}
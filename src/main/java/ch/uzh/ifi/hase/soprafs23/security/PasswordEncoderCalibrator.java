@@ -0,0 +1,98 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PasswordEncoderCalibrator
+ * Benchmarks the machine at startup and picks the strongest work factor whose hash
+ * still fits into the configured time budget. The returned encoder prefixes every
+ * hash with the algorithm id ({bcrypt} or {scrypt}), the cost parameters are part of
+ * the hash itself. Hashes without a prefix are treated as legacy bcrypt hashes.
+ */
+public final class PasswordEncoderCalibrator {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordEncoderCalibrator.class);
+
+    static final String BCRYPT = "bcrypt";
+    static final String SCRYPT = "scrypt";
+
+    static final int MIN_BCRYPT_STRENGTH = 10;
+    static final int MAX_BCRYPT_STRENGTH = 16;
+    static final int MIN_SCRYPT_LOG2_N = 14;
+    static final int SCRYPT_R = 8;
+    static final int SCRYPT_P = 1;
+
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    private PasswordEncoderCalibrator() {
+    }
+
+    public static PasswordEncoder create(String algorithm, long budgetMillis, int maxScryptLog2N) {
+        boolean scrypt = SCRYPT.equalsIgnoreCase(algorithm);
+        int bcryptStrength = !scrypt && budgetMillis > 0 ? calibrateBCryptStrength(budgetMillis) : MIN_BCRYPT_STRENGTH;
+        int scryptLog2N = scrypt && budgetMillis > 0 ? calibrateScryptLog2N(budgetMillis, maxScryptLog2N) : MIN_SCRYPT_LOG2_N;
+
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        BCryptPasswordEncoder bcryptEncoder = new BCryptPasswordEncoder(bcryptStrength);
+        encoders.put(BCRYPT, bcryptEncoder);
+        encoders.put(SCRYPT, new ScryptPasswordEncoder(1 << scryptLog2N, SCRYPT_R, SCRYPT_P));
+
+        DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder(scrypt ? SCRYPT : BCRYPT, encoders);
+        // hashes created before the algorithm was stored with the hash are plain bcrypt hashes
+        delegatingEncoder.setDefaultPasswordEncoderForMatches(bcryptEncoder);
+
+        if (scrypt) {
+            log.info("Password hashing calibrated to scrypt N=2^{} r={} p={}", scryptLog2N, SCRYPT_R, SCRYPT_P);
+        }
+        else {
+            log.info("Password hashing calibrated to bcrypt strength {}", bcryptStrength);
+        }
+        return delegatingEncoder;
+    }
+
+    static int calibrateBCryptStrength(long budgetMillis) {
+        // warm up the JIT so the first measurement is not dominated by interpretation
+        new BCryptPasswordEncoder(4).encode(SAMPLE_PASSWORD);
+        int strength = MIN_BCRYPT_STRENGTH;
+        for (int candidate = MIN_BCRYPT_STRENGTH; candidate <= MAX_BCRYPT_STRENGTH; candidate++) {
+            long elapsed = measure(new BCryptPasswordEncoder(candidate));
+            if (elapsed > budgetMillis) {
+                break;
+            }
+            strength = candidate;
+            // every step doubles the time, stop before the next one overshoots the budget
+            if (elapsed * 2 > budgetMillis) {
+                break;
+            }
+        }
+        return strength;
+    }
+
+    static int calibrateScryptLog2N(long budgetMillis, int maxLog2N) {
+        int log2N = MIN_SCRYPT_LOG2_N;
+        for (int candidate = MIN_SCRYPT_LOG2_N; candidate <= maxLog2N; candidate++) {
+            long elapsed = measure(new ScryptPasswordEncoder(1 << candidate, SCRYPT_R, SCRYPT_P));
+            if (elapsed > budgetMillis) {
+                break;
+            }
+            log2N = candidate;
+            if (elapsed * 2 > budgetMillis) {
+                break;
+            }
+        }
+        return log2N;
+    }
+
+    private static long measure(PasswordEncoder encoder) {
+        long start = System.nanoTime();
+        encoder.encode(SAMPLE_PASSWORD);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
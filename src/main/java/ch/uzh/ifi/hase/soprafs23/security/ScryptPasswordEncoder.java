@@ -0,0 +1,64 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import com.lambdaworks.crypto.SCryptUtil;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * PasswordEncoder backed by the lambdaworks scrypt implementation.
+ * The hashes use the lambdaworks format ($s0$params$salt$key), the cost parameters
+ * N, r and p are stored inside the hash itself.
+ */
+public class ScryptPasswordEncoder implements PasswordEncoder {
+
+    private final int n;
+    private final int r;
+    private final int p;
+
+    public ScryptPasswordEncoder(int n, int r, int p) {
+        if (n < 2 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("N has to be a power of 2 greater than 1");
+        }
+        this.n = n;
+        this.r = r;
+        this.p = p;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return SCryptUtil.scrypt(rawPassword.toString(), n, r, p);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null || !encodedPassword.startsWith("$s0$")) {
+            return false;
+        }
+        try {
+            return SCryptUtil.check(rawPassword.toString(), encodedPassword);
+        }
+        catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A hash is stale as soon as one of its stored parameters is weaker than the
+     * parameters this encoder was configured with.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        String[] parts = encodedPassword == null ? new String[0] : encodedPassword.split("\\$");
+        if (parts.length != 5 || !"s0".equals(parts[1])) {
+            return true;
+        }
+        long params = Long.parseLong(parts[2], 16);
+        int storedN = 1 << (int) (params >> 16 & 0xffff);
+        int storedR = (int) (params >> 8 & 0xff);
+        int storedP = (int) (params & 0xff);
+        return storedN < n || storedR < r || storedP < p;
+    }
+}
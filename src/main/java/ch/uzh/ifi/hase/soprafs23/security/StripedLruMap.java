@@ -0,0 +1,93 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * StripedLruMap
+ * Map of mutable per-key state (token buckets, failure counters) split into a fixed
+ * number of stripes. Every stripe is a small access ordered LinkedHashMap with its own
+ * lock, so requests for different keys rarely wait for each other, and drops its
+ * least recently used entry once it is full. The memory stays bounded no matter how
+ * many distinct keys (e.g. spoofed usernames or IPs) show up.
+ */
+final class StripedLruMap<V> {
+
+    private final Stripe<V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    StripedLruMap(int stripeCount, int maxEntries) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        int entriesPerStripe = Math.max(1, maxEntries / count);
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>(entriesPerStripe);
+        }
+    }
+
+    /**
+     * Runs the action on the value of the key while holding the lock of its stripe,
+     * the value is created first if the key is not present.
+     */
+    <R> R compute(String key, Supplier<V> factory, Function<V, R> action) {
+        Stripe<V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            V value = stripe.get(key);
+            if (value == null) {
+                value = factory.get();
+                stripe.put(key, value);
+            }
+            return action.apply(value);
+        }
+    }
+
+    /**
+     * Like compute, but does nothing and returns the fallback if the key is not present.
+     */
+    <R> R computeIfPresent(String key, Function<V, R> action, R fallback) {
+        Stripe<V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            V value = stripe.get(key);
+            return value == null ? fallback : action.apply(value);
+        }
+    }
+
+    void remove(String key) {
+        Stripe<V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<V> stripeOf(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe<V> extends LinkedHashMap<String, V> {
+
+        private final int maxEntries;
+
+        private Stripe(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
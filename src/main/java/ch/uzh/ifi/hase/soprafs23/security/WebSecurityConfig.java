@@ -2,6 +2,7 @@ package ch.uzh.ifi.hase.soprafs23.security;
 import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtAuthenticationEntryPoint;
 import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtAuthorizationFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -13,7 +14,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 @Configuration
@@ -29,6 +29,18 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private JwtAuthorizationFilter jwtAuthorizationFilter;
 
+    @Autowired
+    private LoginRateLimitFilter loginRateLimitFilter;
+
+    @Value("${sopra.app.password.algorithm:bcrypt}")
+    private String passwordAlgorithm;
+
+    @Value("${sopra.app.password.hashBudgetMs:250}")
+    private long passwordHashBudgetMs;
+
+    @Value("${sopra.app.password.maxScryptLog2N:15}")
+    private int maxScryptLog2N;
+
     @Autowired
     public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
         auth.userDetailsService(jwtUserDetailsService).passwordEncoder(passwordEncoder());
@@ -42,6 +54,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .authorizeRequests().antMatchers("/login").permitAll()
                 .antMatchers(HttpMethod.GET, "/users").authenticated()
                 .antMatchers(HttpMethod.POST, "/users").permitAll()
+                .antMatchers(HttpMethod.GET, "/users/availability").permitAll()
+                // the startup timeline and the metrics expose internals, so they need a token like any other endpoint
+                .antMatchers(HttpMethod.GET, "/actuator/health").permitAll()
                 // All other requests need to be authenticated
                 .anyRequest().authenticated().and()
                 // Make sure we use stateless session; session won't be used to store user's state.
@@ -50,6 +65,8 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
         // Add a filter to validate the tokens with every request
         http.addFilterBefore(jwtAuthorizationFilter, UsernamePasswordAuthenticationFilter.class);
+        // Reject login and signup floods before any password is hashed
+        http.addFilterBefore(loginRateLimitFilter, JwtAuthorizationFilter.class);
     }
 
     @Override
@@ -65,6 +82,6 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return PasswordEncoderCalibrator.create(passwordAlgorithm, passwordHashBudgetMs, maxScryptLog2N);
     }
 }
\ No newline at end of file
@@ -1,8 +1,14 @@
 package ch.uzh.ifi.hase.soprafs23.security.jtw;
 
+import ch.uzh.ifi.hase.soprafs23.service.PresenceRegistry;
+import ch.uzh.ifi.hase.soprafs23.service.UserDetailsCache;
 import ch.uzh.ifi.hase.soprafs23.service.UserDetailsServiceImpl;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,6 +21,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.ArrayList;
 
 @Component
 public class JwtAuthorizationFilter extends OncePerRequestFilter {
@@ -25,6 +32,16 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private PresenceRegistry presenceRegistry;
+
+    // when enabled the principal is built from the verified token instead of a database lookup
+    @Value("${sopra.app.jwtPrincipalFromClaims:false}")
+    private boolean principalFromClaims;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
         final String authorizationHeader = request.getHeader("Authorization");
@@ -32,24 +49,56 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
         String username = null;
         String jwt = null;
 
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (ExpiredJwtException e) {
-                response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "JWT token has expired");
-                return;
+        // only the authentication itself is timed, not the rest of the chain
+        Timer.Sample sample = Timer.start();
+        String outcome = "anonymous";
+        try {
+            if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+                jwt = authorizationHeader.substring(7);
+                try {
+                    username = jwtUtil.extractUsername(jwt);
+                } catch (ExpiredJwtException e) {
+                    outcome = "expired";
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "JWT token has expired");
+                    return;
+                } catch (JwtException e) {
+                    outcome = "invalid";
+                    throw e;
+                }
             }
-        }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                UserDetails userDetails = resolveUserDetails(username);
 
-            if (jwtUtil.validateToken(jwt, userDetails)) {
-                Authentication authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                if (jwtUtil.validateToken(jwt, userDetails)) {
+                    outcome = "ok";
+                    Authentication authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    // every authenticated request keeps the user online
+                    presenceRegistry.heartbeat(username);
+                }
+                else {
+                    outcome = "invalid";
+                }
             }
         }
+        finally {
+            sample.stop(Timer.builder("sopra.auth.filter")
+                    .description("Time spent authenticating a request from its JWT")
+                    .tag("outcome", outcome)
+                    .register(Metrics.globalRegistry));
+        }
         chain.doFilter(request, response);
     }
+
+    private UserDetails resolveUserDetails(String username) {
+        UserDetails userDetails = userDetailsCache.get(username);
+        if (userDetails == null) {
+            userDetails = principalFromClaims
+                    ? new org.springframework.security.core.userdetails.User(username, "", new ArrayList<>())
+                    : this.userDetailsService.loadUserByUsername(username);
+            userDetailsCache.put(userDetails);
+        }
+        return userDetails;
+    }
 }
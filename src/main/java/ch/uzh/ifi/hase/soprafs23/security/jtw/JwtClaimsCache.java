@@ -0,0 +1,80 @@
+package ch.uzh.ifi.hase.soprafs23.security.jtw;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JwtClaimsCache
+ * Keeps the claims of tokens whose signature has already been verified, keyed by
+ * a SHA-256 digest of the token. Entries are dropped as soon as the token's exp
+ * has passed and the map never grows beyond maxEntries.
+ */
+class JwtClaimsCache {
+
+    private final Map<String, Claims> claimsByDigest = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    JwtClaimsCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    Claims get(String token) {
+        String key = digest(token);
+        Claims claims = claimsByDigest.get(key);
+        if (claims != null && isExpired(claims, System.currentTimeMillis())) {
+            claimsByDigest.remove(key);
+            return null;
+        }
+        return claims;
+    }
+
+    void put(String token, Claims claims) {
+        if (claims.getExpiration() == null) {
+            // tokens without exp are never cached, they could live forever
+            return;
+        }
+        if (claimsByDigest.size() >= maxEntries) {
+            evictExpired();
+            if (claimsByDigest.size() >= maxEntries) {
+                claimsByDigest.clear();
+            }
+        }
+        claimsByDigest.put(digest(token), claims);
+    }
+
+    void invalidate(String token) {
+        claimsByDigest.remove(digest(token));
+    }
+
+    int size() {
+        return claimsByDigest.size();
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        claimsByDigest.values().removeIf(claims -> isExpired(claims, now));
+    }
+
+    private static boolean isExpired(Claims claims, long now) {
+        Date expiration = claims.getExpiration();
+        return expiration == null || expiration.getTime() <= now;
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
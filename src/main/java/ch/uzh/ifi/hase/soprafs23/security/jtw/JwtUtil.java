@@ -2,12 +2,20 @@ package ch.uzh.ifi.hase.soprafs23.security.jtw;
 
 import ch.uzh.ifi.hase.soprafs23.entity.User;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,37 +24,102 @@ import java.util.function.Function;
 @Component
 public class JwtUtil {
 
+    public static final long TOKEN_VALIDITY_MILLIS = 1000 * 60 * 60 * 10; // 10 hours
+
+    static final String USER_ID_CLAIM = "uid";
+    static final String VERSION_CLAIM = "ver";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final Timer CREATE_TIMER = Timer.builder("sopra.jwt.create")
+            .description("Time spent signing a new token")
+            .register(Metrics.globalRegistry);
+    private static final Counter CACHE_HITS = Counter.builder("sopra.jwt.claims.cache")
+            .tag("result", "hit")
+            .register(Metrics.globalRegistry);
+    private static final Counter CACHE_MISSES = Counter.builder("sopra.jwt.claims.cache")
+            .tag("result", "miss")
+            .register(Metrics.globalRegistry);
+
     @Value("${sopra.app.jwtSecret}")
     private String secret;
 
-    public String generateToken(UserDetails userDetails) {
-        Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, userDetails.getUsername());
+    @Value("${sopra.app.jwtClaimsCacheSize:10000}")
+    private int claimsCacheSize;
+
+    private JwtClaimsCache claimsCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @PostConstruct
+    void initClaimsCache() {
+        claimsCache = new JwtClaimsCache(claimsCacheSize);
     }
 
+    /**
+     * The token carries the id and the tokenVersion of the user, increasing the
+     * version in the database revokes all tokens issued before.
+     */
     public String generateToken(User userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, userDetails.getId());
+        claims.put(VERSION_CLAIM, userDetails.getTokenVersion());
         return createToken(claims, userDetails.getUsername());
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
-        long now = System.currentTimeMillis();
-        return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(subject)
-                .setIssuedAt(new Date(now))
-                .setExpiration(new Date(now + 1000 * 60 * 60 * 10)) // 10 hours
-                .signWith(SignatureAlgorithm.HS256, secret)
-                .compact();
+        return CREATE_TIMER.record(() -> {
+            long now = System.currentTimeMillis();
+            return Jwts.builder()
+                    .setClaims(claims)
+                    .setId(newTokenId())
+                    .setSubject(subject)
+                    .setIssuedAt(new Date(now))
+                    .setExpiration(new Date(now + TOKEN_VALIDITY_MILLIS))
+                    .signWith(SignatureAlgorithm.HS256, secret)
+                    .compact();
+        });
     }
 
+    /**
+     * A token is only valid with the id of its user: the revocations are kept in memory,
+     * after a restart a new user with the username of a renamed one would otherwise
+     * be accepted with the tokens of the old one.
+     */
     public boolean validateToken(String token, UserDetails userDetails) {
-        String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        Long userId = claims.get(USER_ID_CLAIM, Long.class);
+        if (userId == null) {
+            return false;
+        }
+        int version = tokenVersionOf(claims);
+        if (tokenRevocationList.isRevoked(claims.getId(), userId, version)) {
+            return false;
+        }
+        if (userDetails instanceof VersionedUserDetails) {
+            VersionedUserDetails versionedUserDetails = (VersionedUserDetails) userDetails;
+            if (!userId.equals(versionedUserDetails.getUserId()) || version < versionedUserDetails.getTokenVersion()) {
+                return false;
+            }
+        }
+        return (claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date()));
+    }
+
+    /**
+     * Revokes this single token (e.g. on signout) until it expires.
+     */
+    public void revokeToken(String token) {
+        final Claims claims = extractAllClaims(token);
+        tokenRevocationList.revokeToken(claims.getId(), claims.getExpiration().getTime());
+        claimsCache.invalidate(token);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    /**
+     * Revokes every token of the user issued with a version below the given one.
+     */
+    public void revokeTokensBelow(Long userId, int version) {
+        tokenRevocationList.revokeVersionsBelow(userId, version, System.currentTimeMillis() + TOKEN_VALIDITY_MILLIS);
     }
 
     public String extractUsername(String token) {
@@ -62,7 +135,45 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
+    private static int tokenVersionOf(Claims claims) {
+        Integer version = claims.get(VERSION_CLAIM, Integer.class);
+        return version == null ? 0 : version;
+    }
+
+    private static String newTokenId() {
+        byte[] id = new byte[12];
+        RANDOM.nextBytes(id);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id);
+    }
+
+    /**
+     * Verifies the signature of the token only the first time it is seen, afterwards
+     * the claims are served from the cache until the token expires.
+     */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+        Claims claims = claimsCache.get(token);
+        if (claims != null) {
+            CACHE_HITS.increment();
+            return claims;
+        }
+        CACHE_MISSES.increment();
+        Timer.Sample sample = Timer.start();
+        String outcome = "invalid";
+        try {
+            claims = Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+            outcome = "ok";
+        }
+        catch (ExpiredJwtException e) {
+            outcome = "expired";
+            throw e;
+        }
+        finally {
+            sample.stop(Timer.builder("sopra.jwt.parse")
+                    .description("Time spent verifying and parsing a token")
+                    .tag("outcome", outcome)
+                    .register(Metrics.globalRegistry));
+        }
+        claimsCache.put(token, claims);
+        return claims;
     }
 }
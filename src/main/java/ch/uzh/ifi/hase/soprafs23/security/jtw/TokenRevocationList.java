@@ -0,0 +1,95 @@
+package ch.uzh.ifi.hase.soprafs23.security.jtw;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenRevocationList
+ * In-memory denylist of tokens that were revoked before they expired. Single tokens
+ * are revoked by their jti (signout), all tokens of a user below a version are revoked
+ * at once when the tokenVersion of the user is increased (username change).
+ * Entries are kept in a queue ordered by expiry and dropped as soon as the tokens
+ * they refer to would have expired anyway, so the list only holds live revocations.
+ */
+@Component
+public class TokenRevocationList {
+
+    private final Map<String, Long> revokedTokenIds = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> minimumVersionByUserId = new ConcurrentHashMap<>();
+    private final DelayQueue<Revocation> expiryQueue = new DelayQueue<>();
+
+    public void revokeToken(String tokenId, long expiresAt) {
+        if (tokenId == null || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        revokedTokenIds.put(tokenId, expiresAt);
+        expiryQueue.add(new Revocation(tokenId, null, expiresAt));
+    }
+
+    /**
+     * Rejects every token of the user with a version lower than the given one until
+     * the last of these tokens has expired.
+     */
+    public void revokeVersionsBelow(Long userId, int version, long lastExpiresAt) {
+        minimumVersionByUserId.merge(userId, version, Math::max);
+        expiryQueue.add(new Revocation(null, userId, lastExpiresAt));
+    }
+
+    public boolean isRevoked(String tokenId, Long userId, int version) {
+        if (tokenId != null && revokedTokenIds.containsKey(tokenId)) {
+            return true;
+        }
+        Integer minimumVersion = userId == null ? null : minimumVersionByUserId.get(userId);
+        return minimumVersion != null && version < minimumVersion;
+    }
+
+    @Scheduled(fixedDelayString = "${sopra.app.revocation.purgeIntervalMs:60000}")
+    public void purgeExpired() {
+        Revocation revocation;
+        while ((revocation = expiryQueue.poll()) != null) {
+            if (revocation.tokenId != null) {
+                revokedTokenIds.remove(revocation.tokenId);
+            }
+            else {
+                // a newer revocation of the same user may still be pending
+                Long userId = revocation.userId;
+                if (expiryQueue.stream().noneMatch(pending -> userId.equals(pending.userId))) {
+                    minimumVersionByUserId.remove(userId);
+                }
+            }
+        }
+    }
+
+    int size() {
+        return revokedTokenIds.size() + minimumVersionByUserId.size();
+    }
+
+    private static final class Revocation implements Delayed {
+
+        private final String tokenId;
+        private final Long userId;
+        private final long expiresAt;
+
+        private Revocation(String tokenId, Long userId, long expiresAt) {
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Revocation) other).expiresAt);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ch.uzh.ifi.hase.soprafs23.security.jtw;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * UserDetails that also carry the id and the current tokenVersion of the user. Tokens
+ * with a lower version have been revoked, tokens with another id were issued to an
+ * earlier owner of the username.
+ */
+public class VersionedUserDetails extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long userId;
+    private final int tokenVersion;
+
+    public VersionedUserDetails(String username, String password, Long userId, int tokenVersion,
+                                Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, true, true, true, true, authorities);
+        this.userId = userId;
+        this.tokenVersion = tokenVersion;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+}
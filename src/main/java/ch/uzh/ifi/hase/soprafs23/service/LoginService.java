@@ -0,0 +1,87 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.audit.AuditJournal;
+import ch.uzh.ifi.hase.soprafs23.constant.AuditEventType;
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.security.LoginRateLimiter;
+import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtUtil;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+
+/**
+ * Login Service
+ * Handles the whole login in a single database round trip: the user row is read
+ * once in a short transaction, the password is verified against that row after the
+ * transaction has ended, so no connection is held during the hash, and a token
+ * carrying the current tokenVersion is issued without writing anything. The ONLINE
+ * status is handed to the PresenceRegistry. Hashes with stale parameters are replaced
+ * with a fresh hash, which costs one additional UPDATE in a transaction of its own.
+ * Failed and successful logins are reported to the LoginRateLimiter, which locks
+ * accounts after too many failures in a row. The password of an unknown username is
+ * checked against a dummy hash, so the response time does not tell whether a
+ * username exists.
+ */
+@Service
+public class LoginService {
+
+    private final UserRepository userRepository;
+    private final JwtUtil jwtUtil;
+    private final PasswordEncoder passwordEncoder;
+    private final PresenceRegistry presenceRegistry;
+    private final LoginRateLimiter loginRateLimiter;
+    private final AuditJournal auditJournal;
+    private final TransactionTemplate transactionTemplate;
+    private final String dummyHash;
+
+    public LoginService(@Qualifier("userRepository") UserRepository userRepository, JwtUtil jwtUtil,
+                        PasswordEncoder passwordEncoder, PresenceRegistry presenceRegistry,
+                        LoginRateLimiter loginRateLimiter, AuditJournal auditJournal,
+                        PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.jwtUtil = jwtUtil;
+        this.passwordEncoder = passwordEncoder;
+        this.presenceRegistry = presenceRegistry;
+        this.loginRateLimiter = loginRateLimiter;
+        this.auditJournal = auditJournal;
+        // read-write, so the user is read from the primary and a signup or rename is seen right away
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dummyHash = passwordEncoder.encode("dummy-password");
+    }
+
+    public User login(String username, String password) {
+        // the user is detached once the transaction has ended
+        Optional<User> existing = transactionTemplate.execute(status -> userRepository.findByUsername(username));
+        // an unknown username costs the same hash as a wrong password
+        boolean matches = password != null && passwordEncoder.matches(password, existing.map(User::getPassword).orElse(dummyHash));
+        User user = matches ? existing.orElse(null) : null;
+        if (user == null) {
+            loginRateLimiter.recordFailure(username);
+            auditJournal.recordNow(AuditEventType.LOGIN_FAILED, null, username);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User with username " + username + " does not exist");
+        }
+        loginRateLimiter.recordSuccess(username);
+        auditJournal.record(AuditEventType.LOGIN, user.getId(), username);
+
+        if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+            // the stored hash uses an outdated algorithm or work factor, the raw password is only available now
+            String upgradedHash = passwordEncoder.encode(password);
+            transactionTemplate.executeWithoutResult(status -> userRepository.updatePassword(user.getId(), upgradedHash));
+        }
+        // nothing is written for the token, it is only signed with the current tokenVersion
+        String token = jwtUtil.generateToken(user);
+        // the status is written behind by the presence registry
+        presenceRegistry.markOnline(user.getUsername());
+        user.setStatus(UserStatus.ONLINE);
+        user.setToken(token);
+        return user;
+    }
+}
@@ -0,0 +1,85 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.exceptions.ServerBusyException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * PasswordHashingExecutor
+ * Small, fixed size pool with a bounded queue for all work that includes a password
+ * hash (signup and login). Keeping the hashing off the request threads means a burst
+ * of signups cannot starve cheap read requests. When the queue is full the work is
+ * rejected right away with a ServerBusyException (503 + Retry-After).
+ */
+@Component
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final int poolSize;
+    private final long retryAfterSeconds;
+
+    public PasswordHashingExecutor(@Value("${sopra.app.hashing.threads:0}") int threads,
+                                   @Value("${sopra.app.hashing.queueCapacity:64}") int queueCapacity,
+                                   @Value("${sopra.app.hashing.retryAfterSeconds:1}") long retryAfterSeconds) {
+        this.poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        }
+        catch (RejectedExecutionException e) {
+            throw new ServerBusyException("Too many signup and login requests, please try again later", retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Runs the task for every item, split into one chunk per thread of the pool, and
+     * completes once all chunks are done. Must not be joined on a thread of the pool,
+     * which could wait for its own chunks.
+     */
+    public <T> CompletableFuture<Void> forEach(List<T> items, Consumer<T> task) {
+        int chunks = Math.min(poolSize, items.size());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks];
+        for (int i = 0; i < chunks; i++) {
+            List<T> chunk = items.subList(items.size() * i / chunks, items.size() * (i + 1) / chunks);
+            futures[i] = submit(() -> {
+                chunk.forEach(task);
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class HashingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
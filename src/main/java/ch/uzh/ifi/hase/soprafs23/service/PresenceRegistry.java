@@ -0,0 +1,173 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PresenceRegistry
+ * Holds the online status of the users in memory. Status changes are served from
+ * here right away and written to the USER table in the background, where all changes
+ * of one flush interval are coalesced into at most one UPDATE per status.
+ * Every authenticated request counts as heartbeat; users without a heartbeat for
+ * longer than the ttl are set OFFLINE even if they never signed out.
+ */
+@Component
+public class PresenceRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(PresenceRegistry.class);
+
+    private final UserRepository userRepository;
+    private final UserEventBroadcaster userEventBroadcaster;
+    private final long ttlMillis;
+
+    // ConcurrentHashMap locks per bin, so concurrent logins of different users do not contend
+    private final Map<String, Presence> presenceByUsername = new ConcurrentHashMap<>();
+    private final Map<String, UserStatus> pendingWrites = new ConcurrentHashMap<>();
+
+    public PresenceRegistry(@Qualifier("userRepository") UserRepository userRepository,
+                            UserEventBroadcaster userEventBroadcaster,
+                            @Value("${sopra.app.presence.ttlMs:300000}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.userEventBroadcaster = userEventBroadcaster;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Users that are still ONLINE in the database (e.g. after a restart) get a fresh
+     * heartbeat, so they expire after the ttl unless they show up again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnlineUsers() {
+        for (String username : userRepository.findUsernamesByStatus(UserStatus.ONLINE)) {
+            track(username, UserStatus.ONLINE);
+        }
+    }
+
+    /**
+     * Records a status that is already stored in the database.
+     */
+    public void track(String username, UserStatus status) {
+        presenceByUsername.put(username, new Presence(status, System.currentTimeMillis()));
+    }
+
+    public void markOnline(String username) {
+        update(username, UserStatus.ONLINE);
+    }
+
+    public void markOffline(String username) {
+        update(username, UserStatus.OFFLINE);
+    }
+
+    /**
+     * Refreshes the last seen timestamp of an online user. Does not bring a user
+     * back online that signed out or expired.
+     */
+    public void heartbeat(String username) {
+        presenceByUsername.computeIfPresent(username, (name, presence) ->
+                presence.status == UserStatus.ONLINE ? new Presence(UserStatus.ONLINE, System.currentTimeMillis()) : presence);
+    }
+
+    /**
+     * @return the live status of the user or null if the registry does not know the user
+     */
+    public UserStatus statusOf(String username) {
+        Presence presence = presenceByUsername.get(username);
+        return presence == null ? null : presence.status;
+    }
+
+    public void rename(String oldUsername, String newUsername) {
+        Presence presence = presenceByUsername.remove(oldUsername);
+        if (presence != null) {
+            presenceByUsername.put(newUsername, presence);
+        }
+        UserStatus pending = pendingWrites.remove(oldUsername);
+        if (pending != null) {
+            pendingWrites.put(newUsername, pending);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sopra.app.presence.expiryIntervalMs:30000}")
+    public void expireIdleUsers() {
+        long deadline = System.currentTimeMillis() - ttlMillis;
+        presenceByUsername.forEach((username, presence) -> {
+            if (presence.status == UserStatus.ONLINE && presence.lastSeen < deadline
+                    && presenceByUsername.replace(username, presence, new Presence(UserStatus.OFFLINE, presence.lastSeen))) {
+                pendingWrites.put(username, UserStatus.OFFLINE);
+                publish(username, UserStatus.OFFLINE);
+            }
+        });
+    }
+
+    /**
+     * Writes all status changes since the last flush with one UPDATE per status.
+     */
+    @Scheduled(fixedDelayString = "${sopra.app.presence.flushIntervalMs:1000}")
+    public void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        Map<UserStatus, List<String>> usernamesByStatus = new EnumMap<>(UserStatus.class);
+        for (Map.Entry<String, UserStatus> pending : pendingWrites.entrySet()) {
+            // only remove the exact value that is written, newer changes stay for the next flush
+            if (pendingWrites.remove(pending.getKey(), pending.getValue())) {
+                usernamesByStatus.computeIfAbsent(pending.getValue(), status -> new ArrayList<>()).add(pending.getKey());
+            }
+        }
+        usernamesByStatus.forEach((status, usernames) -> {
+            try {
+                userRepository.updateStatusForUsernames(status, usernames);
+            }
+            catch (RuntimeException e) {
+                log.warn("Could not write the status {} of {} users, retrying with the next flush", status, usernames.size(), e);
+                usernames.forEach(username -> pendingWrites.putIfAbsent(username, status));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void update(String username, UserStatus status) {
+        Presence previous = presenceByUsername.put(username, new Presence(status, System.currentTimeMillis()));
+        pendingWrites.put(username, status);
+        if (previous == null || previous.status != status) {
+            publish(username, status);
+        }
+    }
+
+    private void publish(String username, UserStatus status) {
+        UserGetDTO delta = new UserGetDTO();
+        delta.setUsername(username);
+        delta.setStatus(status);
+        userEventBroadcaster.publish(delta);
+    }
+
+    private static final class Presence {
+
+        private final UserStatus status;
+        private final long lastSeen;
+
+        private Presence(UserStatus status, long lastSeen) {
+            this.status = status;
+            this.lastSeen = lastSeen;
+        }
+    }
+}
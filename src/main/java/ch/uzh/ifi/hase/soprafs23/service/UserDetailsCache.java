@@ -0,0 +1,80 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * UserDetailsCache
+ * Short lived in-process cache of the principals resolved by the JwtAuthorizationFilter.
+ * Entries expire after the configured ttl and are invalidated explicitly by the
+ * UserService whenever a username changes or a user signs out.
+ */
+@Component
+public class UserDetailsCache {
+
+    private final Map<String, CachedUserDetails> userDetailsByUsername = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    @Autowired
+    public UserDetailsCache(@Value("${sopra.app.userDetailsCacheTtlMs:30000}") long ttlMillis,
+                            @Value("${sopra.app.userDetailsCacheSize:10000}") int maxEntries) {
+        this(System::currentTimeMillis, ttlMillis, maxEntries);
+    }
+
+    UserDetailsCache(LongSupplier clock, long ttlMillis, int maxEntries) {
+        this.clock = clock;
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    public UserDetails get(String username) {
+        CachedUserDetails cached = userDetailsByUsername.get(username);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAt <= clock.getAsLong()) {
+            userDetailsByUsername.remove(username, cached);
+            return null;
+        }
+        return cached.userDetails;
+    }
+
+    public void put(UserDetails userDetails) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        if (userDetailsByUsername.size() >= maxEntries) {
+            userDetailsByUsername.values().removeIf(cached -> cached.expiresAt <= now);
+            if (userDetailsByUsername.size() >= maxEntries) {
+                userDetailsByUsername.clear();
+            }
+        }
+        userDetailsByUsername.put(userDetails.getUsername(), new CachedUserDetails(userDetails, now + ttlMillis));
+    }
+
+    public void invalidate(String username) {
+        if (username != null) {
+            userDetailsByUsername.remove(username);
+        }
+    }
+
+    private static final class CachedUserDetails {
+
+        private final UserDetails userDetails;
+        private final long expiresAt;
+
+        private CachedUserDetails(UserDetails userDetails, long expiresAt) {
+            this.userDetails = userDetails;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
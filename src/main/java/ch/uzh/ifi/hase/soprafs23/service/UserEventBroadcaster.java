@@ -0,0 +1,255 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.exceptions.ServerBusyException;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UserEventBroadcaster
+ * Pushes changes of users (status, username, birthday) to all clients subscribed to
+ * GET /users/events. Every change is serialized once and then queued for every
+ * subscriber. The queues are bounded; a subscriber that cannot keep up and whose
+ * queue overflows is disconnected instead of slowing down everyone else.
+ * The queues are drained by a small, fixed number of dispatcher threads; a subscriber
+ * is drained by at most one thread at a time and gives the thread up after a few
+ * events, so a busy subscriber does not hold up the others. A send blocks until the
+ * container has taken the data, so a stalled client ties up one dispatcher thread
+ * until its send fails; a subscriber whose send has been in flight for longer than
+ * the send timeout is disconnected and gets no further turns.
+ * Every published change also increases the revision of the user list, which is
+ * part of the ETag of GET /users; it only counts the changes seen by this instance.
+ * Changes made inside a transaction are published once it has committed, so a reader
+ * never sees a new revision before the new data.
+ */
+@Component
+public class UserEventBroadcaster {
+
+    private final Logger log = LoggerFactory.getLogger(UserEventBroadcaster.class);
+
+    // events sent to one subscriber before its drain goes to the back of the dispatcher queue
+    private static final int EVENTS_PER_TURN = 16;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ObjectMapper deltaMapper;
+    private final ThreadPoolExecutor dispatcher;
+    private final int maxSubscribers;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final AtomicLong revision = new AtomicLong();
+
+    public UserEventBroadcaster(ObjectMapper objectMapper,
+                                @Value("${sopra.app.events.maxSubscribers:1000}") int maxSubscribers,
+                                @Value("${sopra.app.events.bufferSize:256}") int bufferSize,
+                                @Value("${sopra.app.events.timeoutMs:1800000}") long timeoutMillis,
+                                @Value("${sopra.app.events.sendTimeoutMs:10000}") long sendTimeoutMillis,
+                                @Value("${sopra.app.events.dispatcherThreads:4}") int dispatcherThreads) {
+        // deltas only contain the fields that changed
+        this.deltaMapper = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+        AtomicInteger counter = new AtomicInteger();
+        // at most one drain per subscriber is queued, so the queue never rejects one of them
+        this.dispatcher = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxSubscribers), runnable -> {
+            Thread thread = new Thread(runnable, "user-events-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ServerBusyException("Too many event subscribers, please try again later", 5);
+        }
+        Subscriber subscriber = new Subscriber(emitter, bufferSize);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        return emitter;
+    }
+
+    public void publish(UserGetDTO delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishNow(delta);
+                }
+            });
+        }
+        else {
+            publishNow(delta);
+        }
+    }
+
+    /**
+     * @return a number that changes whenever a user is created or changed through this instance
+     */
+    public long getRevision() {
+        return revision.get();
+    }
+
+    private void publishNow(UserGetDTO delta) {
+        revision.incrementAndGet();
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String json;
+        try {
+            json = deltaMapper.writeValueAsString(delta);
+        }
+        catch (JsonProcessingException e) {
+            log.warn("Could not serialize the change of user {}", delta.getUsername(), e);
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, SseEmitter.event().name("user").data(json, MediaType.APPLICATION_JSON));
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Keeps idle connections open through proxies and load balancers, and disconnects
+     * stalled clients that receive nothing anymore.
+     */
+    @Scheduled(fixedDelayString = "${sopra.app.events.keepAliveMs:15000}")
+    public void keepAlive() {
+        for (Subscriber subscriber : subscribers) {
+            enqueue(subscriber, SseEmitter.event().comment("keep-alive"));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            drop(subscriber);
+        }
+        dispatcher.shutdown();
+    }
+
+    private void enqueue(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        long sendingSince = subscriber.sendingSince;
+        if (sendingSince != 0 && System.nanoTime() - sendingSince > sendTimeoutNanos) {
+            log.debug("Dropping a stalled event subscriber");
+            drop(subscriber);
+            return;
+        }
+        if (!subscriber.queue.offer(event)) {
+            log.debug("Dropping a slow event subscriber");
+            drop(subscriber);
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            dispatch(subscriber);
+        }
+    }
+
+    private void dispatch(Subscriber subscriber) {
+        try {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+        catch (RejectedExecutionException e) {
+            // shutting down
+            subscriber.draining.set(false);
+            drop(subscriber);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            int sent = 0;
+            while (sent++ < EVENTS_PER_TURN && subscribers.contains(subscriber) && (event = subscriber.queue.poll()) != null) {
+                subscriber.sendingSince = System.nanoTime();
+                subscriber.emitter.send(event);
+                subscriber.sendingSince = 0;
+            }
+        }
+        catch (IOException | IllegalStateException e) {
+            subscriber.sendingSince = 0;
+            drop(subscriber);
+            return;
+        }
+        finally {
+            subscriber.draining.set(false);
+        }
+        if (!subscribers.contains(subscriber)) {
+            // dropped while a send was in flight
+            complete(subscriber);
+            return;
+        }
+        // events left after this turn or queued while the draining flag was still set
+        if (!subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            dispatch(subscriber);
+        }
+    }
+
+    /**
+     * Completing the emitter waits for a send in flight, a subscriber that is sending is
+     * completed by its drain once the send returns.
+     */
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.queue.clear();
+            if (subscriber.sendingSince == 0) {
+                complete(subscriber);
+            }
+        }
+    }
+
+    private static void complete(Subscriber subscriber) {
+        if (subscriber.completed.compareAndSet(false, true)) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        // start of the send in flight, 0 if there is none
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter, int bufferSize) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.repository.UserSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * UserSearchIndex
+ * Sorted in-memory index of username to id for the prefix search. The usernames are
+ * ordered case-insensitively in a ConcurrentSkipListMap, so all usernames with a
+ * prefix are found in O(log n) followed by a scan of the matches only, and writers
+ * never block readers. The index is filled at startup from a streaming scan of the
+ * USER table and kept up to date by the UserService.
+ * Entries may briefly be outdated (e.g. a rename during the startup scan), the
+ * search therefore checks the prefix again on the users it loads.
+ */
+@Component
+public class UserSearchIndex {
+
+    // case-insensitive first, usernames that only differ in case are kept apart
+    private static final Comparator<String> ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    private final UserRepository userRepository;
+    private final ConcurrentSkipListMap<String, Long> idsByUsername = new ConcurrentSkipListMap<>(ORDER);
+
+    public UserSearchIndex(@Qualifier("userRepository") UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void build() {
+        try (Stream<UserSummary> users = userRepository.streamAllSummaries()) {
+            users.forEach(user -> put(user.getUsername(), user.getId()));
+        }
+        log.info("Indexed {} usernames for the prefix search", idsByUsername.size());
+    }
+
+    public void put(String username, Long id) {
+        if (username != null && id != null) {
+            idsByUsername.put(username, id);
+        }
+    }
+
+    public void rename(String oldUsername, String newUsername, Long id) {
+        if (oldUsername != null) {
+            idsByUsername.remove(oldUsername, id);
+        }
+        put(newUsername, id);
+    }
+
+    /**
+     * @return the ids of at most limit users whose username starts with the prefix
+     * (ignoring case), ordered by username
+     */
+    public List<Long> idsStartingWith(String prefix, int limit) {
+        List<Long> ids = new ArrayList<>(Math.min(limit, 64));
+        for (Map.Entry<String, Long> entry : idsByUsername.tailMap(lowestWithPrefix(prefix)).entrySet()) {
+            if (ids.size() >= limit || !startsWithIgnoreCase(entry.getKey(), prefix)) {
+                break;
+            }
+            ids.add(entry.getValue());
+        }
+        return ids;
+    }
+
+    int size() {
+        return idsByUsername.size();
+    }
+
+    static boolean startsWithIgnoreCase(String username, String prefix) {
+        return username.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /**
+     * Upper case sorts before lower case, so the upper case spelling of the prefix is
+     * the first key among all spellings of it.
+     */
+    private static String lowestWithPrefix(String prefix) {
+        char[] chars = prefix.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toUpperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
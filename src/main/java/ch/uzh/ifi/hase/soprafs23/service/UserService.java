@@ -1,24 +1,50 @@
 package ch.uzh.ifi.hase.soprafs23.service;
 
+import ch.uzh.ifi.hase.soprafs23.audit.AuditJournal;
+import ch.uzh.ifi.hase.soprafs23.constant.AuditEventType;
+import ch.uzh.ifi.hase.soprafs23.constant.BatchItemStatus;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserListState;
 import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserBatchResultDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPutDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
 import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtUtil;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * User Service
@@ -26,6 +52,9 @@ import java.util.Optional;
  * the user
  * (e.g., it creates, modifies, deletes, finds). The result will be passed back
  * to the caller.
+ * Methods that only read are read-only transactions: Hibernate does not flush them
+ * (FlushMode.MANUAL) and skips the dirty check of the loaded users, and with a
+ * replica configured they run on the replica pool.
  */
 @Service
 @Transactional
@@ -33,18 +62,120 @@ public class UserService {
 
     private final Logger log = LoggerFactory.getLogger(UserService.class);
 
+    private static final Timer PASSWORD_HASH_TIMER = Timer.builder("sopra.password.hash")
+            .description("Time spent hashing the password of a new user")
+            .register(Metrics.globalRegistry);
+
     private final UserRepository userRepository;
     private final JwtUtil jwtUtil;
+    private final UserDetailsCache userDetailsCache;
+    private final PasswordEncoder passwordEncoder;
+    private final PresenceRegistry presenceRegistry;
+    private final UserEventBroadcaster userEventBroadcaster;
+    private final UsernameIndex usernameIndex;
+    private final UserSearchIndex userSearchIndex;
+    private final AuditJournal auditJournal;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @Autowired
-    public UserService(@Qualifier("userRepository") UserRepository userRepository, JwtUtil jwtUtil) {
+    public UserService(@Qualifier("userRepository") UserRepository userRepository, JwtUtil jwtUtil,
+                       UserDetailsCache userDetailsCache, PasswordEncoder passwordEncoder,
+                       PresenceRegistry presenceRegistry, UserEventBroadcaster userEventBroadcaster,
+                       UsernameIndex usernameIndex, UserSearchIndex userSearchIndex, AuditJournal auditJournal,
+                       PasswordHashingExecutor passwordHashingExecutor, PlatformTransactionManager transactionManager) {
         this.userRepository = userRepository;
         this.jwtUtil = jwtUtil;
+        this.userDetailsCache = userDetailsCache;
+        this.passwordEncoder = passwordEncoder;
+        this.presenceRegistry = presenceRegistry;
+        this.userEventBroadcaster = userEventBroadcaster;
+        this.usernameIndex = usernameIndex;
+        this.userSearchIndex = userSearchIndex;
+        this.auditJournal = auditJournal;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
+    @Transactional(readOnly = true)
     public List<User> getUsers() {
         return this.userRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUserSummaries() {
+        return this.userRepository.findAllSummaries();
+    }
+
+    /**
+     * Reads the aggregates the ETag of the user list is derived from. Like the list
+     * itself they come from the database, so every instance derives the same state.
+     */
+    @Transactional(readOnly = true)
+    public UserListState getUserListState() {
+        return this.userRepository.findListState(UserStatus.ONLINE);
+    }
+
+    /**
+     * Returns at most limit users with an id greater than afterId, ordered by id.
+     * Uses a keyset query so the cost of a page does not depend on its position.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummary> getUserSummariesAfter(Long afterId, int limit) {
+        return this.userRepository.findSummariesAfter(afterId, PageRequest.of(0, limit));
+    }
+
+    @Transactional(readOnly = true)
+    public UserSummary getSummaryById(Long id) {
+        return userRepository.findSummaryById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id " + id +" does not exist"));
+    }
+
+    /**
+     * Returns at most limit users whose username starts with the prefix, ignoring case
+     * and ordered by username. The ids come from the UserSearchIndex, only the matching
+     * users are loaded, by primary key.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummary> searchUserSummaries(String prefix, int limit) {
+        List<Long> ids = userSearchIndex.idsStartingWith(prefix, limit);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, UserSummary> usersById = new HashMap<>();
+        for (UserSummary user : userRepository.findSummariesByIdIn(ids)) {
+            usersById.put(user.getId(), user);
+        }
+        List<UserSummary> users = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserSummary user = usersById.get(id);
+            // skips users that were deleted or renamed since they were indexed
+            if (user != null && UserSearchIndex.startsWithIgnoreCase(user.getUsername(), prefix)) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Hands every user to the consumer one after the other without ever holding the
+     * whole table in memory. Each user is detached once it has been consumed so the
+     * persistence context stays small.
+     */
+    @Transactional(readOnly = true)
+    public void streamUsers(Consumer<User> consumer) {
+        try (Stream<User> users = this.userRepository.streamAllOrderById()) {
+            users.forEach(user -> {
+                consumer.accept(user);
+                entityManager.detach(user);
+            });
+        }
+    }
+
+    @Transactional(readOnly = true)
     public User getById(Long id) {
         Optional<User> selectedUser = userRepository.findById(id);
         if (selectedUser.isPresent()) {
@@ -55,6 +186,7 @@ public class UserService {
         }
     }
 
+    @Transactional(readOnly = true)
     public User getByUsername(String username){
         Optional<User> selectedUser = userRepository.findByUsername(username);
         if (selectedUser.isPresent()) {
@@ -65,55 +197,199 @@ public class UserService {
         }
     }
 
+    /**
+     * Answers from the UsernameIndex without a transaction if the username is definitely
+     * free, only a possibly taken username is looked up.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public boolean isUsernameAvailable(String username) {
+        return !usernameIndex.mightContain(username) || !userRepository.findByUsername(username).isPresent();
+    }
+
     public User createUser(User newUser) {
-        newUser.setToken(jwtUtil.generateToken(newUser));
         newUser.setStatus(UserStatus.ONLINE);
         checkIfUserExists(newUser);
         newUser.setCreationDate(new Date());
-        BCryptPasswordEncoder b = new BCryptPasswordEncoder();
-        newUser.setPassword(b.encode(newUser.getPassword()));
-        newUser = userRepository.save(newUser);
-        userRepository.flush();
+        newUser.setPassword(hashPassword(newUser.getPassword()));
+        try {
+            newUser = userRepository.save(newUser);
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            // taken by a concurrent signup after the check
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A user with this username already exists!");
+        }
+        usernameIndex.add(newUser.getUsername());
+        userSearchIndex.put(newUser.getUsername(), newUser.getId());
+        auditJournal.record(AuditEventType.SIGNUP, newUser.getId(), newUser.getUsername());
+        // the token contains the id of the user, which is only known after the insert
+        newUser.setToken(jwtUtil.generateToken(newUser));
+        presenceRegistry.track(newUser.getUsername(), UserStatus.ONLINE);
+        userEventBroadcaster.publish(DTOMapper.INSTANCE.convertEntityToUserGetDTO(newUser));
 
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
 
+    /**
+     * Creates all valid users of the batch at once. The uniqueness of the usernames is
+     * checked with a single IN query, the passwords are hashed in parallel on the
+     * hashing pool and the inserts are sent in JDBC batches, each step in a transaction
+     * of its own so no connection is held while hashing. A username taken by a
+     * concurrent signup after the check fails the batch insert; the users are then
+     * inserted one by one and the taken ones reported as CONFLICT.
+     * The result contains one entry per input user, in the same order. Has to be called
+     * outside the hashing pool, the insert continues on it.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CompletableFuture<List<UserBatchResultDTO>> createUsers(List<User> newUsers) {
+        List<BatchItemStatus> statuses = transactionTemplate.execute(status -> checkNewUsers(newUsers));
+        List<User> usersToCreate = new ArrayList<>();
+        for (int i = 0; i < newUsers.size(); i++) {
+            if (statuses.get(i) == BatchItemStatus.CREATED) {
+                usersToCreate.add(newUsers.get(i));
+            }
+        }
+        Date creationDate = new Date();
+        return passwordHashingExecutor.forEach(usersToCreate, newUser -> {
+            newUser.setPassword(hashPassword(newUser.getPassword()));
+            newUser.setStatus(UserStatus.OFFLINE);
+            newUser.setCreationDate(creationDate);
+        }).thenApply(hashed -> insertUsers(newUsers, statuses, usersToCreate));
+    }
+
+    private List<BatchItemStatus> checkNewUsers(List<User> newUsers) {
+        Set<String> requestedUsernames = new HashSet<>();
+        for (User newUser : newUsers) {
+            // only the usernames that might be taken are looked up
+            if (newUser.getUsername() != null && usernameIndex.mightContain(newUser.getUsername())) {
+                requestedUsernames.add(newUser.getUsername());
+            }
+        }
+        Set<String> takenUsernames = requestedUsernames.isEmpty()
+                ? new HashSet<>() : new HashSet<>(userRepository.findExistingUsernames(requestedUsernames));
+
+        List<BatchItemStatus> statuses = new ArrayList<>(newUsers.size());
+        for (User newUser : newUsers) {
+            if (isBlank(newUser.getUsername()) || isBlank(newUser.getPassword())) {
+                statuses.add(BatchItemStatus.INVALID);
+            }
+            else if (!takenUsernames.add(newUser.getUsername())) {
+                // already in the database or earlier in the same batch
+                statuses.add(BatchItemStatus.CONFLICT);
+            }
+            else {
+                statuses.add(BatchItemStatus.CREATED);
+            }
+        }
+        return statuses;
+    }
+
+    private List<UserBatchResultDTO> insertUsers(List<User> newUsers, List<BatchItemStatus> statuses, List<User> usersToCreate) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                userRepository.saveAll(usersToCreate);
+                userRepository.flush();
+            });
+        }
+        catch (DataIntegrityViolationException e) {
+            log.debug("Batch insert failed, inserting the users one by one", e);
+            for (int i = 0; i < newUsers.size(); i++) {
+                User newUser = newUsers.get(i);
+                if (statuses.get(i) != BatchItemStatus.CREATED) {
+                    continue;
+                }
+                // the id was assigned by the rolled back insert
+                newUser.setId(null);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        userRepository.save(newUser);
+                        userRepository.flush();
+                    });
+                }
+                catch (DataIntegrityViolationException conflict) {
+                    // taken by a concurrent signup after the check
+                    statuses.set(i, BatchItemStatus.CONFLICT);
+                }
+            }
+        }
+
+        int created = 0;
+        List<UserBatchResultDTO> results = new ArrayList<>(newUsers.size());
+        for (int i = 0; i < newUsers.size(); i++) {
+            User newUser = newUsers.get(i);
+            BatchItemStatus status = statuses.get(i);
+            if (status == BatchItemStatus.CREATED) {
+                usernameIndex.add(newUser.getUsername());
+                userSearchIndex.put(newUser.getUsername(), newUser.getId());
+                auditJournal.record(AuditEventType.SIGNUP, newUser.getId(), newUser.getUsername());
+                newUser.setToken(jwtUtil.generateToken(newUser));
+                userEventBroadcaster.publish(DTOMapper.INSTANCE.convertEntityToUserGetDTO(newUser));
+                created++;
+            }
+            results.add(new UserBatchResultDTO(newUser.getUsername(), status == BatchItemStatus.CREATED ? newUser.getId() : null, status));
+        }
+        log.debug("Created {} users in a batch of {}", created, newUsers.size());
+        return results;
+    }
+
+    /**
+     * Loads the user in this read-write transaction, so from the primary and never from
+     * a replica that has not caught up yet, and applies the updates if it still matches
+     * the precondition of the caller (e.g. its If-Match header).
+     */
+    public User updateUser(Long id, User updates, HttpServletRequest request, Predicate<User> precondition) {
+        User current = userRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id " + id +" does not exist"));
+        if (!precondition.test(current)) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The user was changed in the meantime, please reload it");
+        }
+        return updateUser(current, updates, request);
+    }
+
     public User updateUser(User current, User updates, HttpServletRequest request){
+        boolean usernameChanged;
+        String oldUsername = current.getUsername();
         if (editAccess(current, request)){
+            usernameChanged = !current.getUsername().equals(updates.getUsername());
             current.setUsername(updates.getUsername());
             current.setBirthday(updates.getBirthday());
-            current.setToken(jwtUtil.generateToken(current));
+            if (usernameChanged) {
+                // tokens issued for the old username must not be accepted anymore
+                current.setTokenVersion(current.getTokenVersion() + 1);
+            }
         } else {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "You are not authorized to change the username on behalf of another user!");
         }
         try {
             current = userRepository.save(current);
             userRepository.flush();
-            return current;
+        } catch (ObjectOptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "The user was changed in the meantime, please reload it");
         } catch (Exception e){
             throw new ResponseStatusException(HttpStatus.CONFLICT, "A user with this username already exists!");
         }
+        // only once the update is stored: a taken username must not touch the entries of the other user
+        userDetailsCache.invalidate(oldUsername);
+        if (usernameChanged) {
+            presenceRegistry.rename(oldUsername, current.getUsername());
+            usernameIndex.add(current.getUsername());
+            userSearchIndex.rename(oldUsername, current.getUsername(), current.getId());
+            jwtUtil.revokeTokensBelow(current.getId(), current.getTokenVersion());
+        }
+        current.setToken(jwtUtil.generateToken(current));
+        userEventBroadcaster.publish(DTOMapper.INSTANCE.convertEntityToUserGetDTO(current));
+        auditJournal.record(AuditEventType.PROFILE_UPDATE, current.getId(), current.getUsername());
+        return current;
     }
 
-    public User getLogoutUser(HttpServletRequest request){
-        String username = jwtUtil.extractUsername(request.getHeader("Authorization").substring(7));
-        Optional<User> existingUser = userRepository.findByUsername(username);
-        existingUser.get().setStatus(UserStatus.OFFLINE);
-        userRepository.save(existingUser.get());
-        userRepository.flush();
-        return existingUser.get();
-    }
-    public User getLoginUser(User u){
-        //get the user
-        Optional<User> existingUser = userRepository.findByUsername(u.getUsername());
-        // set the status
-        existingUser.get().setStatus(UserStatus.ONLINE);
-        // generate a new token
-        existingUser.get().setToken(jwtUtil.generateToken(existingUser.get()));
-        u = userRepository.save(existingUser.get());
-        userRepository.flush();
-        return u;
+    public void getLogoutUser(HttpServletRequest request){
+        String token = request.getHeader("Authorization").substring(7);
+        String username = jwtUtil.extractUsername(token);
+        jwtUtil.revokeToken(token);
+        userDetailsCache.invalidate(username);
+        // the OFFLINE status is written behind by the presence registry
+        presenceRegistry.markOffline(username);
+        auditJournal.record(AuditEventType.LOGOUT, null, username);
     }
 
     /**
@@ -127,6 +403,10 @@ public class UserService {
      * @see User
      */
     private void checkIfUserExists(User userToBeCreated) {
+        if (!usernameIndex.mightContain(userToBeCreated.getUsername())) {
+            // definitely free, the unique constraint catches a concurrent signup
+            return;
+        }
         Optional<User> userByUsername = userRepository.findByUsername(userToBeCreated.getUsername());
         String baseErrorMessage = "The %s provided %s not unique. Therefore, the user could not be created! Thus the username aleady exists";
         if (userByUsername.isPresent()) {
@@ -134,8 +414,20 @@ public class UserService {
         }
     }
 
+    private String hashPassword(String password) {
+        return PASSWORD_HASH_TIMER.record(() -> passwordEncoder.encode(password));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
     public boolean editAccess(User currentUser, HttpServletRequest request) {
+        return editAccess(currentUser.getUsername(), request);
+    }
+
+    public boolean editAccess(String currentUsername, HttpServletRequest request) {
         String username = jwtUtil.extractUsername(request.getHeader("Authorization").substring(7));
-        return username.equals(currentUser.getUsername());
+        return username.equals(currentUsername);
     }
 }
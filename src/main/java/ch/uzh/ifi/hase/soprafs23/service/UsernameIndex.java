@@ -0,0 +1,119 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * UsernameIndex
+ * Bloom filter of all usernames that are taken. A username the filter does not
+ * contain is definitely free, so the signup and the availability check only query
+ * the database for the few usernames that might be taken. The filter is filled at
+ * startup from a streaming scan of the USER table and every created or renamed user
+ * is added right away. Usernames are never removed: the old name of a renamed user
+ * stays in the filter and only costs a database lookup.
+ * Until the scan has completed every username might be taken.
+ */
+@Component
+public class UsernameIndex {
+
+    private final Logger log = LoggerFactory.getLogger(UsernameIndex.class);
+
+    private final UserRepository userRepository;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private volatile boolean ready;
+
+    public UsernameIndex(@Qualifier("userRepository") UserRepository userRepository,
+                         @Value("${sopra.app.usernameIndex.expectedUsers:1000000}") long expectedUsers,
+                         @Value("${sopra.app.usernameIndex.falsePositiveRate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        // optimal size and number of hash functions for the expected number of users
+        long optimalBits = (long) Math.ceil(-expectedUsers * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = words * 64L;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUsers * Math.log(2)));
+    }
+
+    /**
+     * Streams the usernames of all users into the filter. Users created in the
+     * meantime are added by the UserService and are not lost.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void build() {
+        long count = 0;
+        try (Stream<String> usernames = userRepository.streamAllUsernames()) {
+            for (String username : (Iterable<String>) usernames::iterator) {
+                add(username);
+                count++;
+            }
+        }
+        ready = true;
+        log.info("Indexed {} usernames in a bloom filter of {} KiB with {} hash functions", count, bitCount / 8 / 1024, hashCount);
+    }
+
+    public void add(String username) {
+        if (username == null) {
+            return;
+        }
+        long hash = hash(username);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                // another bit of the same word was set concurrently, retry
+            }
+        }
+    }
+
+    /**
+     * @return false if the username is definitely not taken, true if it might be
+     */
+    public boolean mightContain(String username) {
+        if (!ready || username == null) {
+            return true;
+        }
+        long hash = hash(username);
+        int first = (int) hash;
+        int second = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(first + i * second) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64 bit FNV-1a over the characters, with a final mix so both halves can be used
+     * as independent hashes (Kirsch-Mitzenmacher).
+     */
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            hash ^= username.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,65 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * JwtWebFilter
+ * Reactive counterpart of the JwtAuthorizationFilter. Verifies the bearer token,
+ * rejects revoked tokens and stores the verified claims as exchange attribute for the
+ * controllers. Like the servlet security config, only the signup (POST /users) and
+ * the login can be called without a token.
+ */
+@Component
+public class JwtWebFilter implements WebFilter {
+
+    public static final String CLAIMS_ATTRIBUTE = JwtWebFilter.class.getName() + ".claims";
+
+    private final ReactiveTokenService tokenService;
+
+    public JwtWebFilter(ReactiveTokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String authorizationHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
+            Claims claims;
+            try {
+                claims = tokenService.parse(authorizationHeader.substring(7));
+            }
+            catch (ExpiredJwtException e) {
+                return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "JWT token has expired"));
+            }
+            catch (JwtException | IllegalArgumentException e) {
+                return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid JWT token"));
+            }
+            if (tokenService.isRevoked(claims)) {
+                return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "JWT token has been revoked"));
+            }
+            exchange.getAttributes().put(CLAIMS_ATTRIBUTE, claims);
+        }
+        else if (!isPublic(exchange.getRequest())) {
+            return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Unauthorized"));
+        }
+        return chain.filter(exchange);
+    }
+
+    private static boolean isPublic(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        return "/login".equals(path) || "/".equals(path)
+                || (HttpMethod.POST.equals(request.getMethod()) && "/users".equals(path));
+    }
+}
@@ -0,0 +1,21 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * ReactiveApplication
+ * Serves the user API (/users, /users/{id}, /login, /signout) on WebFlux and R2DBC
+ * with a small, fixed number of event loop threads. It is built from its own source
+ * set and only scans this package, the servlet application is not affected.
+ * Start with ./gradlew bootRunReactive, it always runs with the "reactive" profile.
+ */
+@SpringBootApplication
+@EnableScheduling
+public class ReactiveApplication {
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(ReactiveApplication.class).profiles("reactive").run(args);
+    }
+}
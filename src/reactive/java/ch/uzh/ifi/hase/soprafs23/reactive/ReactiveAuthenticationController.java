@@ -0,0 +1,36 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import io.jsonwebtoken.Claims;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * ReactiveAuthenticationController
+ * Same contract as the JwtAuthenticationController (/login and /signout).
+ */
+@RestController
+public class ReactiveAuthenticationController {
+
+    private final ReactiveUserService userService;
+
+    public ReactiveAuthenticationController(ReactiveUserService userService) {
+        this.userService = userService;
+    }
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<UserGetDTO>> login(@RequestBody UserPostDTO authenticationRequest) {
+        return userService.login(authenticationRequest.getUsername(), authenticationRequest.getPassword())
+                .map(loginUser -> ResponseEntity.ok()
+                        .header("Access-Control-Expose-Headers", "Access-Token, Uid")
+                        .header("Access-Token", loginUser.getToken())
+                        .body(ReactiveUserController.convertToUserGetDTO(loginUser)));
+    }
+
+    @PutMapping("/signout")
+    public Mono<ResponseEntity<Void>> logoutUser(@RequestAttribute(JwtWebFilter.CLAIMS_ATTRIBUTE) Claims claims) {
+        return userService.logout(claims).thenReturn(ResponseEntity.ok().build());
+    }
+}
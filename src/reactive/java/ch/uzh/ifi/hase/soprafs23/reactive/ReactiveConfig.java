@@ -0,0 +1,52 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import ch.uzh.ifi.hase.soprafs23.security.PasswordEncoderCalibrator;
+import ch.uzh.ifi.hase.soprafs23.security.jtw.TokenRevocationList;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ConnectionFactoryInitializer;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * ReactiveConfig
+ * Beans of the reactive application that the servlet application gets from its own
+ * configuration (password encoder, revocation list) plus the schema of the R2DBC database.
+ */
+@Configuration
+public class ReactiveConfig {
+
+    @Bean
+    public ConnectionFactoryInitializer schemaInitializer(ConnectionFactory connectionFactory) {
+        ConnectionFactoryInitializer initializer = new ConnectionFactoryInitializer();
+        initializer.setConnectionFactory(connectionFactory);
+        initializer.setDatabasePopulator(new ResourceDatabasePopulator(new ClassPathResource("schema-reactive.sql")));
+        return initializer;
+    }
+
+    @Bean
+    public TokenRevocationList tokenRevocationList() {
+        return new TokenRevocationList();
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${sopra.app.password.algorithm:bcrypt}") String algorithm,
+                                           @Value("${sopra.app.password.hashBudgetMs:250}") long hashBudgetMs,
+                                           @Value("${sopra.app.password.maxScryptLog2N:15}") int maxScryptLog2N) {
+        return PasswordEncoderCalibrator.create(algorithm, hashBudgetMs, maxScryptLog2N);
+    }
+
+    /**
+     * Password hashes are CPU bound and must never run on the event loop.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler passwordHashingScheduler(@Value("${sopra.app.hashing.threads:0}") int threads) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Schedulers.newParallel("password-hashing", poolSize, true);
+    }
+}
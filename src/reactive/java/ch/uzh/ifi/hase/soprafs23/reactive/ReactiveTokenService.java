@@ -0,0 +1,85 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import ch.uzh.ifi.hase.soprafs23.security.jtw.TokenRevocationList;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ReactiveTokenService
+ * Issues and verifies the same tokens as the JwtUtil of the servlet application
+ * (subject, uid, ver and jti claims, signed with sopra.app.jwtSecret). Only the
+ * revocation list is consulted on every request, the user row is never loaded to
+ * authenticate a request.
+ */
+@Component
+public class ReactiveTokenService {
+
+    static final long TOKEN_VALIDITY_MILLIS = 1000 * 60 * 60 * 10; // 10 hours
+    static final String USER_ID_CLAIM = "uid";
+    static final String VERSION_CLAIM = "ver";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final String secret;
+    private final TokenRevocationList tokenRevocationList;
+
+    public ReactiveTokenService(@Value("${sopra.app.jwtSecret}") String secret, TokenRevocationList tokenRevocationList) {
+        this.secret = secret;
+        this.tokenRevocationList = tokenRevocationList;
+    }
+
+    public String generateToken(ReactiveUser user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, user.getId());
+        claims.put(VERSION_CLAIM, user.getTokenVersion());
+        byte[] tokenId = new byte[12];
+        RANDOM.nextBytes(tokenId);
+        long now = System.currentTimeMillis();
+        return Jwts.builder()
+                .setClaims(claims)
+                .setId(Base64.getUrlEncoder().withoutPadding().encodeToString(tokenId))
+                .setSubject(user.getUsername())
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + TOKEN_VALIDITY_MILLIS))
+                .signWith(SignatureAlgorithm.HS256, secret)
+                .compact();
+    }
+
+    /**
+     * @return the verified claims of the token
+     * @throws io.jsonwebtoken.JwtException if the token is expired, malformed, not signed with our secret or
+     * does not carry the id of its user
+     */
+    public Claims parse(String token) {
+        Claims claims = Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+        if (claims.get(USER_ID_CLAIM) == null) {
+            throw new MalformedJwtException("The token does not carry the id of its user");
+        }
+        return claims;
+    }
+
+    public boolean isRevoked(Claims claims) {
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        Number version = claims.get(VERSION_CLAIM, Number.class);
+        return tokenRevocationList.isRevoked(claims.getId(), userId == null ? null : userId.longValue(),
+                version == null ? 0 : version.intValue());
+    }
+
+    public void revoke(Claims claims) {
+        tokenRevocationList.revokeToken(claims.getId(), claims.getExpiration().getTime());
+    }
+
+    public void revokeTokensBelow(Long userId, int version) {
+        tokenRevocationList.revokeVersionsBelow(userId, version, System.currentTimeMillis() + TOKEN_VALIDITY_MILLIS);
+    }
+}
@@ -0,0 +1,100 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * ReactiveUser
+ * Row of the users table of the reactive application, the R2DBC counterpart of the
+ * User entity. R2DBC has no lazy loading or dirty checking, every change is written
+ * with an explicit save.
+ */
+@Table("users")
+public class ReactiveUser {
+
+    @Id
+    private Long id;
+
+    private String username;
+
+    private String password;
+
+    private LocalDateTime birthday;
+
+    private LocalDateTime creationDate;
+
+    private int tokenVersion;
+
+    private UserStatus status;
+
+    @Transient
+    private String token;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public LocalDateTime getBirthday() {
+        return birthday;
+    }
+
+    public void setBirthday(LocalDateTime birthday) {
+        this.birthday = birthday;
+    }
+
+    public LocalDateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(LocalDateTime creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(int tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
+    public UserStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(UserStatus status) {
+        this.status = status;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
@@ -0,0 +1,86 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPutDTO;
+import io.jsonwebtoken.Claims;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * ReactiveUserController
+ * Same contract as the UserController (/users and /users/{id}), including the
+ * Access-Token and Edit-Access headers.
+ */
+@RestController
+public class ReactiveUserController {
+
+    private final ReactiveUserService userService;
+
+    public ReactiveUserController(ReactiveUserService userService) {
+        this.userService = userService;
+    }
+
+    @GetMapping("/users")
+    public Flux<UserGetDTO> getAllUsers() {
+        return userService.getUsers().map(ReactiveUserController::convertToUserGetDTO);
+    }
+
+    @PostMapping("/users")
+    public Mono<ResponseEntity<UserGetDTO>> createUser(@RequestBody UserPostDTO userPostDTO) {
+        return userService.createUser(userPostDTO.getUsername(), userPostDTO.getPassword())
+                .map(createdUser -> ResponseEntity.status(HttpStatus.CREATED)
+                        .header("Access-Control-Expose-Headers", "Access-Token, Uid")
+                        .header("Access-Token", createdUser.getToken())
+                        .body(convertToUserGetDTO(createdUser)));
+    }
+
+    @GetMapping("/users/{id}")
+    public Mono<ResponseEntity<UserGetDTO>> getUserById(@PathVariable Long id,
+                                                        @RequestAttribute(JwtWebFilter.CLAIMS_ATTRIBUTE) Claims claims) {
+        return userService.getById(id)
+                .map(user -> ResponseEntity.ok()
+                        .header("Access-Control-Expose-Headers", "Edit-Access, Uid")
+                        .header("Edit-Access", String.valueOf(userService.editAccess(user, claims)))
+                        .body(convertToUserGetDTO(user)));
+    }
+
+    @PutMapping("/users/{id}")
+    public Mono<ResponseEntity<Void>> updateUserById(@PathVariable Long id, @RequestBody UserPutDTO userPutDTO,
+                                                     @RequestAttribute(JwtWebFilter.CLAIMS_ATTRIBUTE) Claims claims) {
+        return userService.updateUser(id, userPutDTO.getUsername(), toLocalDateTime(userPutDTO.getBirthday()), claims)
+                .map(updatedUser -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.add("Access-Control-Expose-Headers", "Access-Token, Edit-Access, Uid");
+                    headers.add("Access-Token", updatedUser.getToken());
+                    headers.add("Edit-Access", "true"); // value can be hardcoded as the check is done in update user
+                    return ResponseEntity.noContent().headers(headers).build();
+                });
+    }
+
+    static UserGetDTO convertToUserGetDTO(ReactiveUser user) {
+        UserGetDTO userGetDTO = new UserGetDTO();
+        userGetDTO.setId(user.getId());
+        userGetDTO.setUsername(user.getUsername());
+        userGetDTO.setStatus(user.getStatus());
+        userGetDTO.setBirthday(toDate(user.getBirthday()));
+        userGetDTO.setCreationDate(toDate(user.getCreationDate()));
+        return userGetDTO;
+    }
+
+    private static Date toDate(LocalDateTime dateTime) {
+        return dateTime == null ? null : Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
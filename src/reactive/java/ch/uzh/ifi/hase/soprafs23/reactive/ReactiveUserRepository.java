@@ -0,0 +1,22 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository("reactiveUserRepository")
+public interface ReactiveUserRepository extends ReactiveCrudRepository<ReactiveUser, Long> {
+
+    Mono<ReactiveUser> findByUsername(String username);
+
+    Mono<Boolean> existsByUsername(String username);
+
+    Flux<ReactiveUser> findAllByOrderById();
+
+    @Modifying
+    @Query("UPDATE users SET status = :status WHERE username = :username")
+    Mono<Integer> updateStatus(String username, String status);
+}
@@ -0,0 +1,119 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.LocalDateTime;
+
+/**
+ * ReactiveUserService
+ * Same rules as the UserService and LoginService of the servlet application, as a
+ * non-blocking pipeline: database access goes through R2DBC, password hashes run on
+ * the hashing scheduler and no call ever blocks an event loop thread.
+ */
+@Service
+public class ReactiveUserService {
+
+    private final ReactiveUserRepository userRepository;
+    private final ReactiveTokenService tokenService;
+    private final PasswordEncoder passwordEncoder;
+    private final Scheduler passwordHashingScheduler;
+
+    public ReactiveUserService(@Qualifier("reactiveUserRepository") ReactiveUserRepository userRepository,
+                               ReactiveTokenService tokenService, PasswordEncoder passwordEncoder,
+                               @Qualifier("passwordHashingScheduler") Scheduler passwordHashingScheduler) {
+        this.userRepository = userRepository;
+        this.tokenService = tokenService;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingScheduler = passwordHashingScheduler;
+    }
+
+    public Flux<ReactiveUser> getUsers() {
+        return userRepository.findAllByOrderById();
+    }
+
+    public Mono<ReactiveUser> getById(Long id) {
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id " + id + " does not exist")));
+    }
+
+    public Mono<ReactiveUser> createUser(String username, String password) {
+        String baseErrorMessage = "The %s provided %s not unique. Therefore, the user could not be created! Thus the username aleady exists";
+        return userRepository.existsByUsername(username)
+                .flatMap(exists -> exists
+                        ? Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, String.format(baseErrorMessage, "username", "is")))
+                        : hash(password))
+                .map(hash -> {
+                    ReactiveUser newUser = new ReactiveUser();
+                    newUser.setUsername(username);
+                    newUser.setPassword(hash);
+                    newUser.setStatus(UserStatus.ONLINE);
+                    newUser.setCreationDate(LocalDateTime.now());
+                    return newUser;
+                })
+                .flatMap(userRepository::save)
+                // a concurrent signup with the same username passed the check as well
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new ResponseStatusException(HttpStatus.CONFLICT, String.format(baseErrorMessage, "username", "is")))
+                .doOnNext(user -> user.setToken(tokenService.generateToken(user)));
+    }
+
+    public Mono<ReactiveUser> login(String username, String password) {
+        return userRepository.findByUsername(username)
+                .filterWhen(user -> password == null ? Mono.just(false)
+                        : Mono.fromCallable(() -> passwordEncoder.matches(password, user.getPassword())).subscribeOn(passwordHashingScheduler))
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User with username " + username + " does not exist")))
+                .flatMap(user -> userRepository.updateStatus(user.getUsername(), UserStatus.ONLINE.name()).thenReturn(user))
+                .doOnNext(user -> {
+                    user.setStatus(UserStatus.ONLINE);
+                    user.setToken(tokenService.generateToken(user));
+                });
+    }
+
+    public Mono<Void> logout(Claims claims) {
+        tokenService.revoke(claims);
+        return userRepository.updateStatus(claims.getSubject(), UserStatus.OFFLINE.name()).then();
+    }
+
+    public Mono<ReactiveUser> updateUser(Long id, String username, LocalDateTime birthday, Claims claims) {
+        return getById(id)
+                .flatMap(current -> {
+                    if (!current.getUsername().equals(claims.getSubject())) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "You are not authorized to change the username on behalf of another user!"));
+                    }
+                    boolean usernameChanged = !current.getUsername().equals(username);
+                    current.setUsername(username);
+                    current.setBirthday(birthday);
+                    if (usernameChanged) {
+                        // tokens issued for the old username must not be accepted anymore
+                        current.setTokenVersion(current.getTokenVersion() + 1);
+                    }
+                    return userRepository.save(current)
+                            .onErrorMap(DataIntegrityViolationException.class,
+                                    e -> new ResponseStatusException(HttpStatus.CONFLICT, "A user with this username already exists!"))
+                            .doOnNext(saved -> {
+                                if (usernameChanged) {
+                                    tokenService.revokeTokensBelow(saved.getId(), saved.getTokenVersion());
+                                }
+                                saved.setToken(tokenService.generateToken(saved));
+                            });
+                });
+    }
+
+    public boolean editAccess(ReactiveUser user, Claims claims) {
+        return claims != null && user.getUsername().equals(claims.getSubject());
+    }
+
+    private Mono<String> hash(String password) {
+        return Mono.fromCallable(() -> passwordEncoder.encode(password)).subscribeOn(passwordHashingScheduler);
+    }
+}
@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL UNIQUE,
+    password VARCHAR(255) NOT NULL,
+    birthday TIMESTAMP,
+    creation_date TIMESTAMP NOT NULL,
+    token_version INT NOT NULL DEFAULT 0,
+    status VARCHAR(16) NOT NULL
+);
@@ -0,0 +1,172 @@
+package ch.uzh.ifi.hase.soprafs23.reactive;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPutDTO;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * ReactiveUserControllerTest
+ * The cases of the UserControllerTest against the reactive controllers, with the
+ * service mocked and the JwtWebFilter in place.
+ */
+@WebFluxTest(controllers = {ReactiveUserController.class, ReactiveAuthenticationController.class})
+public class ReactiveUserControllerTest {
+
+    private static final String TOKEN = "token";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private ReactiveUserService userService;
+
+    @MockBean
+    private ReactiveTokenService tokenService;
+
+    private Claims claims;
+
+    @BeforeEach
+    public void setup() {
+        claims = Jwts.claims().setSubject("firstname@lastname");
+        given(tokenService.parse(TOKEN)).willReturn(claims);
+    }
+
+    @Test
+    public void givenUsers_whenGetUsers_thenReturnJsonArray() {
+        // given
+        ReactiveUser user = newUser();
+        given(userService.getUsers()).willReturn(Flux.just(user));
+
+        // when/then
+        webTestClient.get().uri("/users").header("Authorization", "Bearer " + TOKEN).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].username").isEqualTo(user.getUsername())
+                .jsonPath("$[0].status").isEqualTo(user.getStatus().toString());
+    }
+
+    @Test
+    public void getUsers_withoutToken_unauthorized() {
+        webTestClient.get().uri("/users").exchange().expectStatus().isUnauthorized();
+    }
+
+    @Test
+    public void createUser_validInput_userCreated() {
+        // given
+        ReactiveUser user = newUser();
+        user.setToken("newToken");
+        given(userService.createUser("firstname@lastname", "password")).willReturn(Mono.just(user));
+
+        UserPostDTO userPostDTO = new UserPostDTO();
+        userPostDTO.setUsername("firstname@lastname");
+        userPostDTO.setPassword("password");
+
+        // when/then
+        webTestClient.post().uri("/users").contentType(MediaType.APPLICATION_JSON).bodyValue(userPostDTO).exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals("Access-Token", "newToken")
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(user.getId().intValue())
+                .jsonPath("$.username").isEqualTo(user.getUsername())
+                .jsonPath("$.status").isEqualTo(user.getStatus().toString());
+    }
+
+    @Test
+    public void createUser_duplicateUsername_conflict() {
+        given(userService.createUser("firstname@lastname", "password"))
+                .willReturn(Mono.error(new ResponseStatusException(HttpStatus.CONFLICT, "username not unique")));
+
+        UserPostDTO userPostDTO = new UserPostDTO();
+        userPostDTO.setUsername("firstname@lastname");
+        userPostDTO.setPassword("password");
+
+        webTestClient.post().uri("/users").contentType(MediaType.APPLICATION_JSON).bodyValue(userPostDTO).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    public void getUserById_validId_userReturnedWithEditAccess() {
+        ReactiveUser user = newUser();
+        given(userService.getById(1L)).willReturn(Mono.just(user));
+        given(userService.editAccess(user, claims)).willReturn(true);
+
+        webTestClient.get().uri("/users/1").header("Authorization", "Bearer " + TOKEN).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Edit-Access", "true")
+                .expectBody()
+                .jsonPath("$.username").isEqualTo(user.getUsername());
+    }
+
+    @Test
+    public void getUserById_unknownId_notFound() {
+        given(userService.getById(2L)).willReturn(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id 2 does not exist")));
+
+        webTestClient.get().uri("/users/2").header("Authorization", "Bearer " + TOKEN).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void updateUser_ValidUserUpdated() {
+        ReactiveUser user = newUser();
+        user.setToken("newToken");
+        given(userService.updateUser(eq(1L), eq("newUsername"), any(), eq(claims))).willReturn(Mono.just(user));
+
+        UserPutDTO userPutDTO = new UserPutDTO();
+        userPutDTO.setUsername("newUsername");
+
+        webTestClient.put().uri("/users/1").header("Authorization", "Bearer " + TOKEN)
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(userPutDTO).exchange()
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals("Access-Token", "newToken");
+    }
+
+    @Test
+    public void updateUser_otherUser_unauthorized() {
+        given(userService.updateUser(eq(1L), eq("newUsername"), any(), eq(claims)))
+                .willReturn(Mono.error(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "not authorized")));
+
+        UserPutDTO userPutDTO = new UserPutDTO();
+        userPutDTO.setUsername("newUsername");
+
+        webTestClient.put().uri("/users/1").header("Authorization", "Bearer " + TOKEN)
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(userPutDTO).exchange()
+                .expectStatus().isUnauthorized();
+    }
+
+    @Test
+    public void signout_validToken_ok() {
+        given(userService.logout(claims)).willReturn(Mono.empty());
+
+        webTestClient.put().uri("/signout").header("Authorization", "Bearer " + TOKEN).exchange()
+                .expectStatus().isOk();
+    }
+
+    private static ReactiveUser newUser() {
+        ReactiveUser user = new ReactiveUser();
+        user.setId(1L);
+        user.setUsername("firstname@lastname");
+        user.setStatus(UserStatus.ONLINE);
+        user.setCreationDate(LocalDateTime.now());
+        return user;
+    }
+}
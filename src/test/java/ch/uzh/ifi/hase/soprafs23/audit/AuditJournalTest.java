@@ -0,0 +1,135 @@
+package ch.uzh.ifi.hase.soprafs23.audit;
+
+import ch.uzh.ifi.hase.soprafs23.constant.AuditEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AuditJournalTest
+ * Tests the journal against a temporary directory: replay from an offset, rolling
+ * over to the next segment, cutting overlong usernames, continuing an existing
+ * journal after a restart and starting without a journal if the directory cannot
+ * be written.
+ */
+public class AuditJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private AuditJournal journal;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void replay_fromOffset_eventsInOrder() throws Exception {
+        journal = open(1 << 20);
+        journal.record(AuditEventType.SIGNUP, 1L, "first");
+        journal.record(AuditEventType.LOGIN, 1L, "first");
+        journal.record(AuditEventType.LOGIN_FAILED, null, "unknown");
+        awaitEvents(3);
+
+        List<AuditEvent> events = replayAll(0);
+        assertEquals(3, events.size());
+        assertEquals(AuditEventType.SIGNUP, events.get(0).getType());
+        assertEquals(Long.valueOf(1L), events.get(0).getUserId());
+        assertEquals("first", events.get(0).getUsername());
+        assertNull(events.get(2).getUserId());
+        assertEquals("unknown", events.get(2).getUsername());
+
+        // resume from the second event
+        List<AuditEvent> resumed = replayAll(events.get(1).getOffset());
+        assertEquals(2, resumed.size());
+        assertEquals(AuditEventType.LOGIN, resumed.get(0).getType());
+    }
+
+    @Test
+    public void record_segmentFull_rollsOverToNextSegment() throws Exception {
+        journal = open(256);
+        for (int i = 0; i < 20; i++) {
+            journal.record(AuditEventType.PROFILE_UPDATE, (long) i, "user" + i);
+        }
+        awaitEvents(20);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.filter(file -> file.toString().endsWith(".journal")).count() > 1);
+        }
+        List<AuditEvent> events = replayAll(0);
+        assertEquals(20, events.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("user" + i, events.get(i).getUsername());
+        }
+    }
+
+    @Test
+    public void record_usernameLongerThanRecordAllows_cutOnCharacterBoundary() throws Exception {
+        journal = open(1 << 20);
+        // two bytes per character in UTF-8, the limit of 0xFFFF bytes falls into a character
+        journal.record(AuditEventType.SIGNUP, 1L, "\u00e4".repeat(40000));
+        awaitEvents(1);
+
+        assertEquals("\u00e4".repeat(0xFFFF / 2), replayAll(0).get(0).getUsername());
+    }
+
+    @Test
+    public void start_existingJournal_continuesAfterLastRecord() throws Exception {
+        journal = open(1 << 20);
+        journal.record(AuditEventType.SIGNUP, 1L, "first");
+        awaitEvents(1);
+        journal.close();
+
+        journal = open(1 << 20);
+        journal.record(AuditEventType.LOGOUT, null, "first");
+        awaitEvents(2);
+
+        List<AuditEvent> events = replayAll(0);
+        assertEquals(2, events.size());
+        assertEquals(AuditEventType.SIGNUP, events.get(0).getType());
+        assertEquals(AuditEventType.LOGOUT, events.get(1).getType());
+    }
+
+    @Test
+    public void start_directoryNotWritable_startsWithoutJournal() throws Exception {
+        // a file is in the way of the directory
+        Path file = Files.createFile(directory.resolve("file"));
+        journal = new AuditJournal(true, file.resolve("journal").toString(), 1 << 20, 1024, 0);
+
+        journal.start();
+        journal.record(AuditEventType.SIGNUP, 1L, "first");
+
+        assertEquals(0, journal.getCommittedOffset());
+    }
+
+    private AuditJournal open(int segmentSize) throws Exception {
+        AuditJournal auditJournal = new AuditJournal(true, directory.toString(), segmentSize, 1024, 0);
+        auditJournal.start();
+        return auditJournal;
+    }
+
+    private List<AuditEvent> replayAll(long fromOffset) throws Exception {
+        List<AuditEvent> events = new ArrayList<>();
+        journal.replay(fromOffset, Integer.MAX_VALUE, events::add);
+        return events;
+    }
+
+    private void awaitEvents(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (replayAll(0).size() < count) {
+            assertTrue(System.currentTimeMillis() < deadline, "the writer did not journal " + count + " events");
+            Thread.sleep(5);
+        }
+    }
+}
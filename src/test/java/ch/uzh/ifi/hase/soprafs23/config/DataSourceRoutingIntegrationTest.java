@@ -0,0 +1,141 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the routing of the transactions to the primary and the replica,
+ * with two separate H2 databases. The replica is brought up to date by copying the
+ * primary with SCRIPT, which stands in for the replication.
+ *
+ * @see DataSourceRoutingConfig
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "sopra.app.datasource.replica.url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "sopra.app.presence.flushIntervalMs=3600000"})
+public class DataSourceRoutingIntegrationTest {
+
+    @Qualifier("userRepository")
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Qualifier("primaryDataSource")
+    @Autowired
+    private DataSource primaryDataSource;
+
+    @Qualifier("replicaDataSource")
+    @Autowired
+    private DataSource replicaDataSource;
+
+    @BeforeEach
+    public void setup() {
+        userRepository.deleteAll();
+        replicate();
+    }
+
+    @Test
+    public void createUser_writesToPrimaryOnly() {
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+
+        userService.createUser(testUser);
+
+        assertEquals(1, countUsers(primaryDataSource));
+        assertEquals(0, countUsers(replicaDataSource));
+    }
+
+    @Test
+    public void getUsers_readsFromReplica() {
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+        User createdUser = userService.createUser(testUser);
+        entityManagerFactory.getCache().evictAll();
+
+        // not replicated yet
+        assertTrue(userService.getUsers().isEmpty());
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.getById(createdUser.getId()));
+        assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+
+        replicate();
+
+        List<User> users = userService.getUsers();
+        assertEquals(1, users.size());
+        assertEquals("testUsername", users.get(0).getUsername());
+        assertEquals("testUsername", userService.getById(createdUser.getId()).getUsername());
+    }
+
+    @Test
+    public void updateUser_notReplicatedYet_loadedFromPrimary() {
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+        User createdUser = userService.createUser(testUser);
+        entityManagerFactory.getCache().evictAll();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + createdUser.getToken());
+        User updates = new User();
+        updates.setUsername("newUsername");
+
+        // the replica does not know the user yet
+        User updatedUser = userService.updateUser(createdUser.getId(), updates, request, user -> true);
+
+        assertEquals("newUsername", updatedUser.getUsername());
+        assertEquals("newUsername", new JdbcTemplate(primaryDataSource)
+                .queryForObject("SELECT USERNAME FROM \"USER\" WHERE ID = ?", String.class, createdUser.getId()));
+        assertEquals(0, countUsers(replicaDataSource));
+    }
+
+    private void replicate() {
+        List<String> statements = new JdbcTemplate(primaryDataSource).queryForList("SCRIPT", String.class);
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        // the replica pool hands out read-only connections, the copy is written through its own connection
+        replica.execute((ConnectionCallback<Void>) connection -> {
+            connection.setReadOnly(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+                for (String sql : statements) {
+                    if (!sql.startsWith("--")) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+            finally {
+                connection.setReadOnly(true);
+            }
+            return null;
+        });
+    }
+
+    private static int countUsers(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM \"USER\"", Integer.class);
+    }
+}
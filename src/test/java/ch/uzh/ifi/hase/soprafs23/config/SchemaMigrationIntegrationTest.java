@@ -0,0 +1,77 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the migration of an existing database, with users that were
+ * inserted without the sequence and the TOKEN column of older versions.
+ *
+ * @see SchemaMigration
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:migration;DB_CLOSE_DELAY=-1",
+        "sopra.app.presence.flushIntervalMs=3600000"})
+public class SchemaMigrationIntegrationTest {
+
+    private static final long EXISTING_ID = 1000000;
+
+    @Autowired
+    private SchemaMigration schemaMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("delete from USER where id = ?", EXISTING_ID);
+    }
+
+    @Test
+    public void restartUserIdSequence_existingIdsAhead_sequenceMovedPastThem() {
+        // a user created before the sequence existed
+        jdbcTemplate.update("insert into USER (id, username, password, creation_date, token_version, status, version) " +
+                "values (?, 'existingUser', 'password', current_timestamp, 0, 0, 0)", EXISTING_ID);
+
+        schemaMigration.restartUserIdSequence();
+
+        // the next block of the pooled optimizer starts after the existing id
+        Long next = jdbcTemplate.queryForObject("select next value for user_id_seq", Long.class);
+        assertTrue(next - User.ID_ALLOCATION_SIZE + 1 > EXISTING_ID);
+    }
+
+    @Test
+    public void restartUserIdSequence_sequenceAhead_unchanged() {
+        Long before = jdbcTemplate.queryForObject("select next value for user_id_seq", Long.class);
+
+        schemaMigration.restartUserIdSequence();
+
+        // only the value read by the migration itself is used up
+        Long after = jdbcTemplate.queryForObject("select next value for user_id_seq", Long.class);
+        assertTrue(after - before <= 2L * User.ID_ALLOCATION_SIZE);
+    }
+
+    @Test
+    public void dropUserTokenColumn_columnOfOlderVersion_droppedAndInsertsWork() {
+        // the column as it was created before the token became transient
+        jdbcTemplate.execute("alter table USER add column TOKEN varchar(255) not null unique");
+
+        schemaMigration.dropUserTokenColumn();
+
+        Integer columns = jdbcTemplate.queryForObject("select count(*) from INFORMATION_SCHEMA.COLUMNS " +
+                "where TABLE_NAME = 'USER' and COLUMN_NAME = 'TOKEN'", Integer.class);
+        assertEquals(0, columns);
+        jdbcTemplate.update("insert into USER (id, username, password, creation_date, token_version, status, version) " +
+                "values (?, 'existingUser', 'password', current_timestamp, 0, 0, 0)", EXISTING_ID);
+
+        // nothing left to drop
+        schemaMigration.dropUserTokenColumn();
+    }
+}
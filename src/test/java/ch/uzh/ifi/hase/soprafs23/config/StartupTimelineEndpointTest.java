@@ -0,0 +1,50 @@
+package ch.uzh.ifi.hase.soprafs23.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StartupTimelineEndpointTest
+ * Tests the report of the startup steps with and without a BufferingApplicationStartup.
+ */
+public class StartupTimelineEndpointTest {
+
+    @Test
+    public void timeline_bufferedSteps_slowestFirstAndNotDrained() {
+        BufferingApplicationStartup applicationStartup = new BufferingApplicationStartup(100);
+        for (String beanName : new String[] {"userService", "userRepository", "jwtUtil"}) {
+            StartupStep step = applicationStartup.start("spring.beans.instantiate").tag("beanName", beanName);
+            step.end();
+        }
+        StartupTimelineEndpoint endpoint = new StartupTimelineEndpoint(applicationStartup);
+
+        StartupTimelineEndpoint.StartupTimelineReport report = endpoint.timeline(2);
+
+        assertEquals(3, report.getStepCount());
+        assertNotNull(report.getStartTime());
+        List<StartupTimelineEndpoint.StartupTimelineStep> steps = report.getSteps();
+        assertEquals(2, steps.size());
+        assertEquals("spring.beans.instantiate", steps.get(0).getName());
+        assertTrue(steps.get(0).getTags().containsKey("beanName"));
+        assertTrue(steps.get(0).getDurationMillis() >= steps.get(1).getDurationMillis());
+        // reading the report keeps the steps
+        assertEquals(3, endpoint.timeline(null).getSteps().size());
+    }
+
+    @Test
+    public void timeline_notBuffering_noSteps() {
+        StartupTimelineEndpoint endpoint = new StartupTimelineEndpoint(ApplicationStartup.DEFAULT);
+
+        StartupTimelineEndpoint.StartupTimelineReport report = endpoint.timeline(null);
+
+        assertEquals(0, report.getStepCount());
+        assertTrue(report.getSteps().isEmpty());
+        assertEquals(-1, report.getReadyAfterMillis());
+    }
+}
@@ -1,16 +1,28 @@
 package ch.uzh.ifi.hase.soprafs23.controller;
 
+import ch.uzh.ifi.hase.soprafs23.audit.AuditJournal;
+import ch.uzh.ifi.hase.soprafs23.constant.BatchItemStatus;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserListState;
 import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserBatchResultDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPostDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.dto.UserPutDTO;
 import ch.uzh.ifi.hase.soprafs23.rest.mapper.DTOMapper;
+import ch.uzh.ifi.hase.soprafs23.security.LoginRateLimiter;
 import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtAuthenticationEntryPoint;
 import ch.uzh.ifi.hase.soprafs23.security.jtw.JwtUtil;
+import ch.uzh.ifi.hase.soprafs23.service.PasswordHashingExecutor;
+import ch.uzh.ifi.hase.soprafs23.service.PresenceRegistry;
+import ch.uzh.ifi.hase.soprafs23.service.UserDetailsCache;
 import ch.uzh.ifi.hase.soprafs23.service.UserDetailsServiceImpl;
+import ch.uzh.ifi.hase.soprafs23.service.UserEventBroadcaster;
+import ch.uzh.ifi.hase.soprafs23.service.UserSearchIndex;
 import ch.uzh.ifi.hase.soprafs23.service.UserService;
+import ch.uzh.ifi.hase.soprafs23.service.UsernameIndex;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeAll;
@@ -23,20 +35,30 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
@@ -46,7 +68,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -56,7 +81,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * This tests if the UserController works.
  */
 
-@WebMvcTest(UserController.class)
+// a single hashing thread with a single queue slot, so the pool is easily saturated
+@WebMvcTest(value = UserController.class, properties = {"sopra.app.hashing.threads=1", "sopra.app.hashing.queueCapacity=1"})
+@Import(PasswordHashingExecutor.class)
 @WithMockUser
 public class UserControllerTest {
 
@@ -75,12 +102,33 @@ public class UserControllerTest {
     @MockBean
     private UserDetailsServiceImpl userDetailsService;
 
+    @MockBean
+    private UserDetailsCache userDetailsCache;
+
+    @MockBean
+    private PresenceRegistry presenceRegistry;
+
+    @MockBean
+    private UserEventBroadcaster userEventBroadcaster;
+
     @MockBean
     private AuthenticationManager authenticationManager;
 
+    @MockBean
+    private LoginRateLimiter loginRateLimiter;
+
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UsernameIndex usernameIndex;
+
+    @Mock
+    private UserSearchIndex userSearchIndex;
+
+    @Mock
+    private AuditJournal auditJournal;
+
     @Test
     public void givenUsers_whenGetUsers_thenReturnJsonArray() throws Exception {
         // given
@@ -88,11 +136,12 @@ public class UserControllerTest {
         user.setUsername("firstname@lastname");
         user.setStatus(UserStatus.OFFLINE);
 
-        List<User> allUsers = Collections.singletonList(user);
+        List<UserSummary> allUsers = Collections.singletonList(summaryOf(user));
 
         // this mocks the UserService -> we define above what the userService should
-        // return when getUsers() is called
-        given(userService.getUsers()).willReturn(allUsers);
+        // return when getUserSummaries() is called
+        given(userService.getUserSummaries()).willReturn(allUsers);
+        given(userService.getUserListState()).willReturn(listStateOf(1, 0));
 
         // when
         MockHttpServletRequestBuilder getRequest = get("/users").contentType(MediaType.APPLICATION_JSON);
@@ -104,6 +153,73 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$[0].status", is(user.getStatus().toString())));
     }
 
+    @Test
+    public void givenUsers_whenGetUsersPage_thenReturnPageWithNextCursor() throws Exception {
+        // given
+        User first = new User();
+        first.setId(1L);
+        first.setUsername("first");
+        first.setStatus(UserStatus.ONLINE);
+        User second = new User();
+        second.setId(2L);
+        second.setUsername("second");
+        second.setStatus(UserStatus.OFFLINE);
+
+        // one more user than the limit is returned -> there is a next page
+        given(userService.getUserSummariesAfter(0L, 2)).willReturn(List.of(summaryOf(first), summaryOf(second)));
+        given(userService.getUserListState()).willReturn(listStateOf(2, 0));
+
+        // when
+        MockHttpServletRequestBuilder getRequest = get("/users?limit=1").contentType(MediaType.APPLICATION_JSON);
+
+        // then
+        mockMvc.perform(getRequest).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].username", is(first.getUsername())))
+                .andExpect(header().string("Next-Cursor", "MQ"))
+                .andExpect(header().string("Link", "</users?limit=1&after=MQ>; rel=\"next\""));
+    }
+
+    @Test
+    public void givenUsers_whenStreamUsers_thenOneJsonObjectPerLine() throws Exception {
+        // given
+        User first = new User();
+        first.setId(1L);
+        first.setUsername("first");
+        first.setStatus(UserStatus.ONLINE);
+        User second = new User();
+        second.setId(2L);
+        second.setUsername("second");
+        second.setStatus(UserStatus.OFFLINE);
+
+        doAnswer(invocation -> {
+            Consumer<User> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(userService).streamUsers(any());
+
+        // when -> the body is written asynchronously
+        MvcResult asyncResult = mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        // then
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        ObjectMapper objectMapper = new ObjectMapper();
+        UserGetDTO firstDTO = objectMapper.readValue(lines[0], UserGetDTO.class);
+        UserGetDTO secondDTO = objectMapper.readValue(lines[1], UserGetDTO.class);
+        assertEquals("first", firstDTO.getUsername());
+        assertEquals(UserStatus.ONLINE, firstDTO.getStatus());
+        assertEquals("second", secondDTO.getUsername());
+        assertEquals(2L, (long) secondDTO.getId());
+    }
+
     @Test
     public void createUser_validInput_userCreated() throws Exception {
         // given
@@ -125,14 +241,102 @@ public class UserControllerTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(asJsonString(userPostDTO));
 
-        // then
-        mockMvc.perform(postRequest)
+        // then -> the user is created on the hashing pool and the response is dispatched async
+        MvcResult asyncResult = mockMvc.perform(postRequest)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.id", is(user.getId().intValue())))
                 .andExpect(jsonPath("$.username", is(user.getUsername())))
                 .andExpect(jsonPath("$.status", is(user.getStatus().toString())));
     }
 
+    @Test
+    public void createUser_hashingPoolSaturated_serviceUnavailableWithRetryAfter() throws Exception {
+        // given -> the hashing thread is busy with the first signup until the latch is released
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        user.setToken("1");
+        user.setStatus(UserStatus.ONLINE);
+        CountDownLatch release = new CountDownLatch(1);
+        given(userService.createUser(Mockito.any())).willAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return user;
+        });
+
+        UserPostDTO userPostDTO = new UserPostDTO();
+        userPostDTO.setUsername("testUsername");
+        userPostDTO.setPassword("asdf");
+        MockHttpServletRequestBuilder postRequest = post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(asJsonString(userPostDTO));
+
+        try {
+            // the first signup runs, the second waits in the only queue slot
+            mockMvc.perform(postRequest).andExpect(request().asyncStarted());
+            mockMvc.perform(postRequest).andExpect(request().asyncStarted());
+
+            // then -> the third one is rejected right away
+            mockMvc.perform(postRequest)
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"));
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void createUsers_mixedBatch_resultPerItem() throws Exception {
+        // given
+        List<UserPostDTO> batch = new ArrayList<>();
+        for (String username : new String[] {"first", "existing", ""}) {
+            UserPostDTO userPostDTO = new UserPostDTO();
+            userPostDTO.setUsername(username);
+            userPostDTO.setPassword("asdf");
+            batch.add(userPostDTO);
+        }
+        given(userService.createUsers(Mockito.any())).willReturn(CompletableFuture.completedFuture(List.of(
+                new UserBatchResultDTO("first", 1L, BatchItemStatus.CREATED),
+                new UserBatchResultDTO("existing", null, BatchItemStatus.CONFLICT),
+                new UserBatchResultDTO("", null, BatchItemStatus.INVALID))));
+
+        // when -> the passwords of the batch are hashed on the hashing pool
+        MvcResult asyncResult = mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(batch)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].status", is("CREATED")))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[1].status", is("CONFLICT")))
+                .andExpect(jsonPath("$[2].status", is("INVALID")));
+    }
+
+    @Test
+    public void createUsers_tooManyUsers_badRequest() throws Exception {
+        List<UserPostDTO> batch = new ArrayList<>();
+        for (int i = 0; i <= UserController.MAX_BATCH_SIZE; i++) {
+            UserPostDTO userPostDTO = new UserPostDTO();
+            userPostDTO.setUsername("user" + i);
+            userPostDTO.setPassword("asdf");
+            batch.add(userPostDTO);
+        }
+
+        mockMvc.perform(post("/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(batch)))
+                .andExpect(status().isBadRequest());
+        verify(userService, never()).createUsers(any());
+    }
+
     @Test
     public void select_ValidUser_UserReturned() throws Exception {
         // create a single user
@@ -141,7 +345,7 @@ public class UserControllerTest {
         user.setUsername("testUsername");
         user.setStatus(UserStatus.ONLINE);
 
-        given(userService.getById(1L)).willReturn(user);
+        given(userService.getSummaryById(1L)).willReturn(summaryOf(user));
 
         // when/then -> do the request + validate the result
         MockHttpServletRequestBuilder getRequest = get("/users/1");
@@ -154,6 +358,92 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.status", is(user.getStatus().toString())));
     }
 
+    @Test
+    public void select_ValidUserWithCurrentETag_NotModified() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        user.setStatus(UserStatus.ONLINE);
+        user.setVersion(3);
+
+        given(userService.getSummaryById(1L)).willReturn(summaryOf(user));
+
+        String eTag = mockMvc.perform(get("/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3-ONLINE\""))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/users/1").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void givenUsers_whenGetUsersWithCurrentETag_thenNotModifiedWithoutQuery() throws Exception {
+        User user = new User();
+        user.setUsername("firstname@lastname");
+        user.setStatus(UserStatus.OFFLINE);
+        given(userService.getUserSummaries()).willReturn(Collections.singletonList(summaryOf(user)));
+        given(userService.getUserListState()).willReturn(listStateOf(1, 3));
+        given(userEventBroadcaster.getRevision()).willReturn(5L);
+
+        String eTag = mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/users").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+        verify(userService, times(1)).getUserSummaries();
+
+        // any change of a user published by this instance invalidates the ETag of the list
+        given(userEventBroadcaster.getRevision()).willReturn(6L);
+        mockMvc.perform(get("/users").header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void givenUserChangedThroughOtherInstance_whenGetUsersWithOldETag_thenOk() throws Exception {
+        User user = new User();
+        user.setUsername("firstname@lastname");
+        user.setStatus(UserStatus.OFFLINE);
+        given(userService.getUserSummaries()).willReturn(Collections.singletonList(summaryOf(user)));
+        given(userService.getUserListState()).willReturn(listStateOf(1, 3));
+        given(userEventBroadcaster.getRevision()).willReturn(5L);
+
+        String eTag = mockMvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // the version in the database increased, the revision of this instance did not
+        given(userService.getUserListState()).willReturn(listStateOf(1, 4));
+        mockMvc.perform(get("/users").header("If-None-Match", eTag))
+                .andExpect(status().isOk());
+        verify(userService, times(2)).getUserSummaries();
+    }
+
+    @Test
+    public void updateUser_StaleIfMatch_PreconditionFailed() throws Exception {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("user1");
+        user.setStatus(UserStatus.ONLINE);
+        user.setVersion(2);
+        ReflectionTestUtils.setField(userService, "userRepository", userRepository);
+        given(userRepository.findById(1L)).willReturn(Optional.of(user));
+        // the check against If-Match is made by the service, on the user it loaded for the update
+        given(userService.updateUser(eq(1L), any(), any(), any())).willCallRealMethod();
+
+        UserPutDTO userPutDto = new UserPutDTO();
+        userPutDto.setUsername("testUsername");
+
+        mockMvc.perform(put("/users/1")
+                        .header("If-Match", "\"1-ONLINE\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(userPutDto)))
+                .andExpect(status().isPreconditionFailed());
+        verify(userService, never()).updateUser(any(User.class), any(), any());
+    }
+
     @Test
     public void select_InvalidUser_ErrorThrown() throws Exception {
         given(userService.getById(2L)).willThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id 2 does not exist"));
@@ -199,14 +489,32 @@ public class UserControllerTest {
         Field repo = UserService.class.getDeclaredField("userRepository");
         repo.setAccessible(true);
         repo.set(userService, userRepository);
+        Field cache = UserService.class.getDeclaredField("userDetailsCache");
+        cache.setAccessible(true);
+        cache.set(userService, userDetailsCache);
+        Field presence = UserService.class.getDeclaredField("presenceRegistry");
+        presence.setAccessible(true);
+        presence.set(userService, presenceRegistry);
+        Field events = UserService.class.getDeclaredField("userEventBroadcaster");
+        events.setAccessible(true);
+        events.set(userService, userEventBroadcaster);
+        Field index = UserService.class.getDeclaredField("usernameIndex");
+        index.setAccessible(true);
+        index.set(userService, usernameIndex);
+        Field search = UserService.class.getDeclaredField("userSearchIndex");
+        search.setAccessible(true);
+        search.set(userService, userSearchIndex);
+        Field audit = UserService.class.getDeclaredField("auditJournal");
+        audit.setAccessible(true);
+        audit.set(userService, auditJournal);
 
         Mockito.when(jwtUtil.generateToken((User) Mockito.any())).thenReturn("12345");
         Mockito.when(userRepository.findById(Mockito.any())).thenReturn(Optional.of(user));
         Mockito.when(userRepository.save(Mockito.any())).thenReturn(updatedUser);
 
-        Mockito.when(userService.getById(Mockito.any())).thenReturn(user);
-        Mockito.when(userService.editAccess(Mockito.any(), Mockito.any())).thenReturn(true);
-        Mockito.when(userService.updateUser(Mockito.any(), Mockito.any(), Mockito.any())).thenCallRealMethod();
+        Mockito.when(userService.editAccess(Mockito.any(User.class), Mockito.any())).thenReturn(true);
+        Mockito.when(userService.updateUser(Mockito.anyLong(), Mockito.any(), Mockito.any(), Mockito.any())).thenCallRealMethod();
+        Mockito.when(userService.updateUser(Mockito.any(User.class), Mockito.any(), Mockito.any())).thenCallRealMethod();
 
         // when/then -> do the request + validate the result
         MockHttpServletRequestBuilder putRequest = put("/users/1")
@@ -220,7 +528,7 @@ public class UserControllerTest {
 
     @Test
     public void updateInvalidUser_ErrorThrown() throws Exception {
-        given(userService.getById(2L)).willThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id 2 does not exist"));
+        given(userService.updateUser(eq(2L), any(), any(), any())).willThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "User with id 2 does not exist"));
 
         UserPutDTO userPutDto = new UserPutDTO();
         userPutDto.setUsername("testUsername");
@@ -237,6 +545,64 @@ public class UserControllerTest {
     }
 
 
+    @Test
+    public void searchUsers_prefix_matchingUsersReturned() throws Exception {
+        // given
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        user.setStatus(UserStatus.ONLINE);
+        given(userService.searchUserSummaries("test", 5)).willReturn(List.of(summaryOf(user)));
+
+        // when
+        MockHttpServletRequestBuilder getRequest = get("/users/search").param("prefix", "test").param("limit", "5");
+
+        // then
+        mockMvc.perform(getRequest).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].username", is("testUsername")))
+                .andExpect(jsonPath("$[0].status", is("ONLINE")));
+    }
+
+    @Test
+    public void searchUsers_emptyPrefix_badRequest() throws Exception {
+        mockMvc.perform(get("/users/search").param("prefix", ""))
+                .andExpect(status().isBadRequest());
+        verify(userService, never()).searchUserSummaries(any(), anyInt());
+    }
+
+    @Test
+    public void searchUsers_limitOutOfRange_badRequest() throws Exception {
+        mockMvc.perform(get("/users/search").param("prefix", "test").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/users/search").param("prefix", "test").param("limit", "101"))
+                .andExpect(status().isBadRequest());
+        verify(userService, never()).searchUserSummaries(any(), anyInt());
+    }
+
+    @Test
+    public void getUsernameAvailability_freeUsername_available() throws Exception {
+        // given
+        given(userService.isUsernameAvailable("freeUsername")).willReturn(true);
+
+        // when
+        MockHttpServletRequestBuilder getRequest = get("/users/availability").param("username", "freeUsername");
+
+        // then
+        mockMvc.perform(getRequest).andExpect(status().isOk())
+                .andExpect(jsonPath("$.username", is("freeUsername")))
+                .andExpect(jsonPath("$.available", is(true)));
+    }
+
+    @Test
+    public void getUsernameAvailability_blankUsername_badRequest() throws Exception {
+        MockHttpServletRequestBuilder getRequest = get("/users/availability").param("username", "  ");
+
+        mockMvc.perform(getRequest).andExpect(status().isBadRequest());
+        verify(userService, never()).isUsernameAvailable(any());
+    }
+
     /**
      * Helper Method to convert userPostDTO into a JSON string such that the input
      * can be processed
@@ -254,4 +620,18 @@ public class UserControllerTest {
                     String.format("The request body could not be created.%s", e.toString()));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Helper Method to back a UserSummary projection by a User entity, the same way
+     * Spring Data creates projections.
+     */
+    private UserSummary summaryOf(User user) {
+        return new SpelAwareProxyProjectionFactory().createProjection(UserSummary.class, user);
+    }
+
+    private UserListState listStateOf(long userCount, long versionSum) {
+        return new SpelAwareProxyProjectionFactory().createProjection(UserListState.class, Map.of(
+                "userCount", userCount, "maxId", userCount, "versionSum", versionSum,
+                "onlineCount", 0L, "onlineIdSum", 0L));
+    }
+}
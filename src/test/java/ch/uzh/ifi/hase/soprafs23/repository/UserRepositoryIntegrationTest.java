@@ -8,6 +8,7 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
 import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -43,4 +44,72 @@ public class UserRepositoryIntegrationTest {
     assertEquals(found.getToken(), user.getToken());
     assertEquals(found.getStatus(), user.getStatus());
   }
+
+  @Test
+  public void findSummaryById_success() {
+    // given
+    User user = new User();
+    user.setUsername("firstname@lastname");
+    user.setPassword("asdf");
+    user.setCreationDate(new Date());
+    user.setStatus(UserStatus.ONLINE);
+    user.setToken("1");
+
+    entityManager.persist(user);
+    entityManager.flush();
+
+    // when
+    UserSummary found = userRepository.findSummaryById(user.getId()).get();
+
+    // then
+    assertEquals(found.getId(), user.getId());
+    assertEquals(found.getUsername(), user.getUsername());
+    assertEquals(found.getStatus(), user.getStatus());
+  }
+
+  @Test
+  public void updateStatusForUsernames_success() {
+    // given
+    User user = new User();
+    user.setUsername("firstname@lastname");
+    user.setPassword("asdf");
+    user.setCreationDate(new Date());
+    user.setStatus(UserStatus.OFFLINE);
+
+    entityManager.persist(user);
+    entityManager.flush();
+
+    // when
+    int updated = userRepository.updateStatusForUsernames(UserStatus.ONLINE, List.of(user.getUsername()));
+
+    // then
+    assertEquals(1, updated);
+    assertEquals(List.of(user.getUsername()), userRepository.findUsernamesByStatus(UserStatus.ONLINE));
+  }
+
+  @Test
+  public void findListState_statusWrittenBehind_stateChanged() {
+    // given
+    User user = new User();
+    user.setUsername("firstname@lastname");
+    user.setPassword("asdf");
+    user.setCreationDate(new Date());
+    user.setStatus(UserStatus.OFFLINE);
+
+    entityManager.persist(user);
+    entityManager.flush();
+    UserListState before = userRepository.findListState(UserStatus.ONLINE);
+
+    // when
+    userRepository.updateStatusForUsernames(UserStatus.ONLINE, List.of(user.getUsername()));
+    UserListState after = userRepository.findListState(UserStatus.ONLINE);
+
+    // then
+    assertEquals(1L, before.getUserCount());
+    assertEquals(user.getId(), before.getMaxId());
+    assertEquals(0L, before.getOnlineCount());
+    assertEquals(1L, after.getOnlineCount());
+    assertEquals(user.getId(), after.getOnlineIdSum());
+    assertEquals(before.getVersionSum(), after.getVersionSum());
+  }
 }
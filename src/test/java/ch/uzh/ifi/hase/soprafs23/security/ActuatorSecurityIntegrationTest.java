@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the actuator endpoints: only the health check is public, the
+ * metrics and the startup timeline need a token.
+ *
+ * @see WebSecurityConfig
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:actuator;DB_CLOSE_DELAY=-1",
+                "sopra.app.presence.flushIntervalMs=3600000"})
+public class ActuatorSecurityIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void health_withoutToken_ok() {
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/actuator/health", String.class).getStatusCode());
+    }
+
+    @Test
+    public void prometheus_withoutToken_unauthorized() {
+        assertEquals(HttpStatus.UNAUTHORIZED, restTemplate.getForEntity("/actuator/prometheus", String.class).getStatusCode());
+    }
+
+    @Test
+    public void startupTimeline_withoutToken_unauthorized() {
+        assertEquals(HttpStatus.UNAUTHORIZED, restTemplate.getForEntity("/actuator/startuptimeline", String.class).getStatusCode());
+    }
+}
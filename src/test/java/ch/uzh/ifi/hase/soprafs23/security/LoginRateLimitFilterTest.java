@@ -0,0 +1,138 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.ReadListener;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LoginRateLimitFilterTest
+ * Tests the responses of the filter and that the controller still gets the body the
+ * filter has read.
+ */
+public class LoginRateLimitFilterTest {
+
+    private static final String LOGIN_BODY = "{\"username\":\"testUsername\",\"password\":\"testPassword\"}";
+
+    @Mock
+    private LoginRateLimiter loginRateLimiter;
+
+    private LoginRateLimitFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        filter = new LoginRateLimitFilter(loginRateLimiter, new ObjectMapper(), true, 4096, 65536);
+    }
+
+    @Test
+    public void doFilter_login_bufferedBodyPassedOn() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(post("/login", LOGIN_BODY), chain);
+
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        Mockito.verify(loginRateLimiter).acquire("127.0.0.1", "testUsername");
+        assertEquals(LOGIN_BODY, StreamUtils.copyToString(chain.getRequest().getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void doFilter_login_bufferedBodyReadableAsynchronously() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        ReadListener readListener = Mockito.mock(ReadListener.class);
+
+        filter(post("/login", LOGIN_BODY), chain);
+        chain.getRequest().getInputStream().setReadListener(readListener);
+
+        Mockito.verify(readListener).onAllDataAvailable();
+    }
+
+    @Test
+    public void doFilter_limitReached_tooManyRequestsWithRetryAfter() throws Exception {
+        Mockito.when(loginRateLimiter.acquire("127.0.0.1", "testUsername")).thenReturn(30L);
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(post("/login", LOGIN_BODY), chain);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        assertEquals("30", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("\"status\":429"));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    public void doFilter_batchSignup_oneTokenPerUser() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        filter(post("/users/batch", "[{\"username\":\"a\"},{\"username\":\"b\"},{\"username\":\"c\"}]"), chain);
+
+        Mockito.verify(loginRateLimiter).acquireForSignups("127.0.0.1", 3);
+        assertNotNull(chain.getRequest());
+    }
+
+    @Test
+    public void doFilter_bodyTooLarge_payloadTooLargeAndNotLimited() throws Exception {
+        MockHttpServletRequest request = post("/login", "{\"username\":\"" + "a".repeat(5000) + "\"}");
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(request, chain);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE.value(), response.getStatus());
+        assertNull(chain.getRequest());
+        Mockito.verifyNoInteractions(loginRateLimiter);
+    }
+
+    @Test
+    public void doFilter_availabilityCheck_limitedByOwnIpBucket() throws Exception {
+        Mockito.when(loginRateLimiter.acquireForLookup("127.0.0.1")).thenReturn(5L);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users/availability");
+        request.setServletPath("/users/availability");
+        request.setParameter("username", "testUsername");
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = filter(request, chain);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        assertEquals("5", response.getHeader("Retry-After"));
+        assertNull(chain.getRequest());
+        Mockito.verify(loginRateLimiter, Mockito.never()).acquire(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void doFilter_otherEndpoint_notFiltered() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        request.setServletPath("/users");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter(request, chain);
+
+        assertNotNull(chain.getRequest());
+        Mockito.verifyNoInteractions(loginRateLimiter);
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request, MockFilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest post(String path, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setServletPath(path);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
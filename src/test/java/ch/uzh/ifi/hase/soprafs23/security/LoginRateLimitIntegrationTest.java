@@ -0,0 +1,45 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the client IP the rate limit sees behind a proxy: the request goes
+ * through Tomcat from 127.0.0.1, a trusted internal proxy, which resolves the client
+ * from X-Forwarded-For (server.forward-headers-strategy=native).
+ *
+ * @see LoginRateLimitFilter
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.datasource.url=jdbc:h2:mem:forwarded;DB_CLOSE_DELAY=-1",
+                "sopra.app.rateLimit.ip.capacity=1", "sopra.app.presence.flushIntervalMs=3600000"})
+public class LoginRateLimitIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    public void login_twoForwardedClients_oneBucketEach() {
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.1", "first"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.1", "second"));
+
+        // another client behind the same proxy has its own bucket
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.2", "third"));
+    }
+
+    private HttpStatus login(String clientIp, String username) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add("X-Forwarded-For", clientIp);
+        String body = "{\"username\":\"" + username + "\",\"password\":\"password\"}";
+        return restTemplate.postForEntity("/login", new HttpEntity<>(body, headers), String.class).getStatusCode();
+    }
+}
@@ -0,0 +1,108 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LoginRateLimiterTest
+ * Tests the token buckets per IP and username, the lockout after failed logins and
+ * the bound of the LRU maps, with a clock that is moved by hand.
+ */
+public class LoginRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private LoginRateLimiter loginRateLimiter;
+
+    @BeforeEach
+    public void setup() {
+        // 3 requests per IP, 2 per username, refilled at one per second; locked for 10s after 3 failures;
+        // 5 availability checks per IP
+        loginRateLimiter = new LoginRateLimiter(clock::get, 3, 60, 2, 60, 3, 10000, 5, 60, 1000, 4);
+    }
+
+    @Test
+    public void acquire_ipBucketEmpty_rejectedUntilRefilled() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, loginRateLimiter.acquire("10.0.0.1", null));
+        }
+        assertEquals(1, loginRateLimiter.acquire("10.0.0.1", null));
+        // other clients are not affected
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.2", null));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.1", null));
+    }
+
+    @Test
+    public void acquire_usernameBucketEmpty_rejectedFromEveryIp() {
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.1", "victim"));
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.2", "victim"));
+
+        assertTrue(loginRateLimiter.acquire("10.0.0.3", "victim") > 0);
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.3", "other"));
+    }
+
+    @Test
+    public void acquireForLookup_ownBucket_signupStillPasses() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, loginRateLimiter.acquireForLookup("10.0.0.1"));
+        }
+        assertTrue(loginRateLimiter.acquireForLookup("10.0.0.1") > 0);
+
+        // the checks while typing did not use up the tokens of the signup
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.1", null));
+    }
+
+    @Test
+    public void acquireForSignups_batch_takesOneTokenPerUser() {
+        assertEquals(0, loginRateLimiter.acquireForSignups("10.0.0.1", 2));
+        assertTrue(loginRateLimiter.acquireForSignups("10.0.0.1", 2) > 0);
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.1", null));
+
+        // a batch larger than the bucket waits for a full bucket instead of never passing
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertEquals(0, loginRateLimiter.acquireForSignups("10.0.0.1", 100));
+    }
+
+    @Test
+    public void recordFailure_tooManyFailures_lockedUntilLockoutEnds() {
+        for (int i = 0; i < 3; i++) {
+            loginRateLimiter.recordFailure("victim");
+        }
+
+        assertEquals(10, loginRateLimiter.acquire("10.0.0.1", "victim"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.1", "victim"));
+    }
+
+    @Test
+    public void recordSuccess_resetsFailures() {
+        loginRateLimiter.recordFailure("user");
+        loginRateLimiter.recordFailure("user");
+        loginRateLimiter.recordSuccess("user");
+        loginRateLimiter.recordFailure("user");
+
+        assertEquals(0, loginRateLimiter.acquire("10.0.0.1", "user"));
+    }
+
+    @Test
+    public void stripedLruMap_manyKeys_staysBounded() {
+        StripedLruMap<int[]> map = new StripedLruMap<>(4, 100);
+        for (int i = 0; i < 10000; i++) {
+            map.compute("key" + i, () -> new int[1], counter -> ++counter[0]);
+        }
+
+        assertTrue(map.size() <= 100);
+        // the most recently used key is still there
+        assertEquals(2, (int) map.compute("key9999", () -> new int[1], counter -> ++counter[0]));
+    }
+}
@@ -0,0 +1,48 @@
+package ch.uzh.ifi.hase.soprafs23.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PasswordEncoderCalibratorTest
+ * Tests that the calibrated encoder stores the algorithm with the hash and detects
+ * hashes that have to be upgraded.
+ */
+public class PasswordEncoderCalibratorTest {
+
+    @Test
+    public void create_bcrypt_prefixesHash() {
+        PasswordEncoder encoder = PasswordEncoderCalibrator.create("bcrypt", 0, 15);
+
+        String hash = encoder.encode("password");
+
+        assertTrue(hash.startsWith("{bcrypt}$2a$10$"));
+        assertTrue(encoder.matches("password", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+    }
+
+    @Test
+    public void create_legacyBcryptHash_matchesAndNeedsUpgrade() {
+        PasswordEncoder encoder = PasswordEncoderCalibrator.create("bcrypt", 0, 15);
+        String legacyHash = new BCryptPasswordEncoder(4).encode("password");
+
+        assertTrue(encoder.matches("password", legacyHash));
+        assertTrue(encoder.upgradeEncoding(legacyHash));
+    }
+
+    @Test
+    public void scryptEncoder_weakerParameters_needsUpgrade() {
+        ScryptPasswordEncoder weak = new ScryptPasswordEncoder(1 << 10, 8, 1);
+        ScryptPasswordEncoder strong = new ScryptPasswordEncoder(1 << 14, 8, 1);
+
+        String hash = weak.encode("password");
+
+        assertTrue(strong.matches("password", hash));
+        assertFalse(strong.matches("wrong", hash));
+        assertTrue(strong.upgradeEncoding(hash));
+        assertFalse(weak.upgradeEncoding(hash));
+    }
+}
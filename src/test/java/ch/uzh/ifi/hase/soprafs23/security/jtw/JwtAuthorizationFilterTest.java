@@ -0,0 +1,113 @@
+package ch.uzh.ifi.hase.soprafs23.security.jtw;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.service.PresenceRegistry;
+import ch.uzh.ifi.hase.soprafs23.service.UserDetailsCache;
+import ch.uzh.ifi.hase.soprafs23.service.UserDetailsServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JwtAuthorizationFilterTest
+ * Tests how the filter resolves the principal of a request: from the database
+ * through the UserDetailsCache, or from the verified claims of the token.
+ */
+public class JwtAuthorizationFilterTest {
+
+    private static final String SECRET = "2D4A614E645267556B5870327335FFFFF92F423F4428472B4B6250655368566D";
+
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Mock
+    private PresenceRegistry presenceRegistry;
+
+    private JwtUtil jwtUtil;
+    private JwtAuthorizationFilter filter;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", 100);
+        ReflectionTestUtils.setField(jwtUtil, "tokenRevocationList", new TokenRevocationList());
+        jwtUtil.initClaimsCache();
+
+        filter = new JwtAuthorizationFilter();
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsCache", new UserDetailsCache(30000, 100));
+        ReflectionTestUtils.setField(filter, "presenceRegistry", presenceRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void doFilter_principalFromClaims_noDatabaseLookup() throws Exception {
+        ReflectionTestUtils.setField(filter, "principalFromClaims", true);
+
+        Authentication authentication = filter(tokenOf("testUsername"));
+
+        assertNotNull(authentication);
+        assertEquals("testUsername", ((UserDetails) authentication.getPrincipal()).getUsername());
+        Mockito.verify(userDetailsService, Mockito.never()).loadUserByUsername(Mockito.any());
+        Mockito.verify(presenceRegistry).heartbeat("testUsername");
+    }
+
+    @Test
+    public void doFilter_principalFromDatabase_loadedOnceThenCached() throws Exception {
+        Mockito.when(userDetailsService.loadUserByUsername("testUsername"))
+                .thenReturn(new VersionedUserDetails("testUsername", "", 1L, 0, new ArrayList<>()));
+        String token = tokenOf("testUsername");
+
+        assertNotNull(filter(token));
+        SecurityContextHolder.clearContext();
+        assertNotNull(filter(token));
+
+        Mockito.verify(userDetailsService, Mockito.times(1)).loadUserByUsername("testUsername");
+    }
+
+    @Test
+    public void doFilter_noToken_anonymous() throws Exception {
+        assertNull(filter(null));
+        Mockito.verifyNoInteractions(userDetailsService, presenceRegistry);
+    }
+
+    private Authentication filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        if (token != null) {
+            request.addHeader("Authorization", "Bearer " + token);
+        }
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        // the request is passed on in any case
+        assertNotNull(chain.getRequest());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private String tokenOf(String username) {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername(username);
+        return jwtUtil.generateToken(user);
+    }
+}
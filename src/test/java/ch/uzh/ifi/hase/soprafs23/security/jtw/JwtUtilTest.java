@@ -0,0 +1,169 @@
+package ch.uzh.ifi.hase.soprafs23.security.jtw;
+
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * JwtUtilTest
+ * Tests the token generation and the verified claims cache of the JwtUtil.
+ */
+public class JwtUtilTest {
+
+    private static final String SECRET = "2D4A614E645267556B5870327335FFFFF92F423F4428472B4B6250655368566D";
+
+    private JwtUtil jwtUtil;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheSize", 2);
+        ReflectionTestUtils.setField(jwtUtil, "tokenRevocationList", new TokenRevocationList());
+        jwtUtil.initClaimsCache();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    public void extractUsername_validToken_cachedAfterFirstParse() {
+        User user = new User();
+        user.setUsername("testUsername");
+        String token = jwtUtil.generateToken(user);
+
+        assertEquals("testUsername", jwtUtil.extractUsername(token));
+        JwtClaimsCache cache = (JwtClaimsCache) ReflectionTestUtils.getField(jwtUtil, "claimsCache");
+        assertNotNull(cache.get(token));
+        assertEquals("testUsername", jwtUtil.extractUsername(token));
+    }
+
+    @Test
+    public void validateToken_revokedToken_invalid() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        String token = jwtUtil.generateToken(user);
+        String otherToken = jwtUtil.generateToken(user);
+        UserDetails userDetails = new VersionedUserDetails("testUsername", "", 1L, 0, new ArrayList<>());
+
+        jwtUtil.revokeToken(token);
+
+        assertFalse(jwtUtil.validateToken(token, userDetails));
+        assertTrue(jwtUtil.validateToken(otherToken, userDetails));
+    }
+
+    @Test
+    public void validateToken_outdatedVersion_invalid() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        String oldToken = jwtUtil.generateToken(user);
+        user.setTokenVersion(1);
+        String newToken = jwtUtil.generateToken(user);
+        UserDetails userDetails = new VersionedUserDetails("testUsername", "", 1L, 1, new ArrayList<>());
+
+        jwtUtil.revokeTokensBelow(1L, 1);
+
+        assertFalse(jwtUtil.validateToken(oldToken, userDetails));
+        assertTrue(jwtUtil.validateToken(newToken, userDetails));
+    }
+
+    @Test
+    public void validateToken_usernameNowOfAnotherUser_invalid() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("testUsername");
+        String token = jwtUtil.generateToken(user);
+        // a new user registered the username after a rename and a restart, with version 0 again
+        UserDetails newOwner = new VersionedUserDetails("testUsername", "", 2L, 0, new ArrayList<>());
+
+        assertFalse(jwtUtil.validateToken(token, newOwner));
+    }
+
+    @Test
+    public void validateToken_withoutUserId_invalid() {
+        String token = Jwts.builder()
+                .setSubject("testUsername")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+        UserDetails claimsPrincipal = new org.springframework.security.core.userdetails.User("testUsername", "", new ArrayList<>());
+
+        assertFalse(jwtUtil.validateToken(token, claimsPrincipal));
+    }
+
+    @Test
+    public void claimsCache_expiredEntry_notReturned() {
+        JwtClaimsCache cache = new JwtClaimsCache(10);
+        Claims claims = Jwts.claims().setSubject("testUsername").setExpiration(new Date(System.currentTimeMillis() - 1000));
+        cache.put("token", claims);
+
+        assertNull(cache.get("token"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void claimsCache_full_staysBounded() {
+        JwtClaimsCache cache = new JwtClaimsCache(2);
+        Date expiration = new Date(System.currentTimeMillis() + 60000);
+        for (int i = 0; i < 5; i++) {
+            cache.put("token" + i, Jwts.claims().setSubject("user" + i).setExpiration(expiration));
+        }
+
+        assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    public void extractUsername_expiredToken_throwsException() {
+        long past = System.currentTimeMillis() - 1000 * 60;
+        String token = Jwts.builder()
+                .setSubject("testUsername")
+                .setIssuedAt(new Date(past - 1000))
+                .setExpiration(new Date(past))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.extractUsername(token));
+    }
+
+    @Test
+    public void extractUsername_recordsParseOutcome() {
+        User user = new User();
+        user.setUsername("testUsername");
+        String token = jwtUtil.generateToken(user);
+        long past = System.currentTimeMillis() - 1000 * 60;
+        String expiredToken = Jwts.builder()
+                .setSubject("testUsername")
+                .setExpiration(new Date(past))
+                .signWith(SignatureAlgorithm.HS256, SECRET)
+                .compact();
+
+        jwtUtil.extractUsername(token);
+        jwtUtil.extractUsername(token);
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.extractUsername(expiredToken));
+
+        assertEquals(1, meterRegistry.get("sopra.jwt.parse").tag("outcome", "ok").timer().count());
+        assertEquals(1, meterRegistry.get("sopra.jwt.parse").tag("outcome", "expired").timer().count());
+        assertEquals(1.0, meterRegistry.get("sopra.jwt.claims.cache").tag("result", "hit").counter().count());
+    }
+}
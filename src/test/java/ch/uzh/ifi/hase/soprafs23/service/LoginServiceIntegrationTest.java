@@ -0,0 +1,150 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.entity.User;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for the login pipeline.
+ *
+ * @see LoginService
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true",
+        "sopra.app.presence.flushIntervalMs=3600000"})
+public class LoginServiceIntegrationTest {
+
+    @Qualifier("userRepository")
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private LoginService loginService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @SpyBean
+    private PasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    public void setup() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void login_validCredentials_servedFromCache() {
+        // given
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+        userService.createUser(testUser);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // when
+        User loggedIn = loginService.login("testUsername", "testPassword");
+
+        // then -> the user is cached since its insert, the token is not stored and the status is written behind
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getNaturalIdCacheHitCount());
+        assertEquals(UserStatus.ONLINE, loggedIn.getStatus());
+        assertNotNull(loggedIn.getToken());
+    }
+
+    @Test
+    public void login_coldCache_noWrite() {
+        // given
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+        userService.createUser(testUser);
+        entityManagerFactory.getCache().evictAll();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        // when
+        loginService.login("testUsername", "testPassword");
+
+        // then -> the username is resolved and the user loaded, nothing is written
+        assertEquals(1, statistics.getNaturalIdCacheMissCount());
+        assertEquals(0, statistics.getEntityUpdateCount());
+        assertEquals(0, statistics.getEntityInsertCount());
+
+        // the second login is served from the cache again
+        statistics.clear();
+        loginService.login("testUsername", "testPassword");
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void login_wrongPassword_throwsException() {
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+        userService.createUser(testUser);
+
+        assertThrows(ResponseStatusException.class, () -> loginService.login("testUsername", "wrongPassword"));
+    }
+
+    @Test
+    public void login_unknownUsername_sameResponseAsWrongPassword() {
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+        userService.createUser(testUser);
+
+        ResponseStatusException unknown = assertThrows(ResponseStatusException.class,
+                () -> loginService.login("unknownUsername", "testPassword"));
+        ResponseStatusException wrongPassword = assertThrows(ResponseStatusException.class,
+                () -> loginService.login("testUsername", "wrongPassword"));
+
+        assertEquals(HttpStatus.NOT_FOUND, unknown.getStatus());
+        assertEquals(wrongPassword.getStatus(), unknown.getStatus());
+    }
+
+    @Test
+    public void login_validCredentials_passwordVerifiedOutsideTransaction() {
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testPassword");
+        userService.createUser(testUser);
+
+        List<Boolean> transactionActive = new ArrayList<>();
+        Mockito.doAnswer(invocation -> {
+            transactionActive.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return invocation.callRealMethod();
+        }).when(passwordEncoder).matches(Mockito.any(), Mockito.any());
+
+        // when
+        loginService.login("testUsername", "testPassword");
+
+        // then -> no database connection is held while hashing
+        assertEquals(List.of(false), transactionActive);
+    }
+}
@@ -0,0 +1,75 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PresenceRegistryTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserEventBroadcaster userEventBroadcaster;
+
+    private PresenceRegistry presenceRegistry;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        presenceRegistry = new PresenceRegistry(userRepository, userEventBroadcaster, 60000);
+    }
+
+    @Test
+    public void flush_severalChanges_coalescedIntoOneUpdatePerStatus() {
+        presenceRegistry.markOnline("first");
+        presenceRegistry.markOnline("second");
+        presenceRegistry.markOffline("second");
+        presenceRegistry.markOffline("third");
+
+        // status reads are served from memory before anything was written
+        assertEquals(UserStatus.OFFLINE, presenceRegistry.statusOf("second"));
+
+        presenceRegistry.flush();
+
+        Mockito.verify(userRepository).updateStatusForUsernames(UserStatus.ONLINE, List.of("first"));
+        Mockito.verify(userRepository).updateStatusForUsernames(Mockito.eq(UserStatus.OFFLINE),
+                Mockito.argThat((Collection<String> usernames) -> usernames.size() == 2 && usernames.containsAll(List.of("second", "third"))));
+
+        // nothing left to write
+        presenceRegistry.flush();
+        Mockito.verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    public void expireIdleUsers_noHeartbeat_setOffline() {
+        presenceRegistry = new PresenceRegistry(userRepository, userEventBroadcaster, -1);
+        presenceRegistry.track("idle", UserStatus.ONLINE);
+
+        presenceRegistry.expireIdleUsers();
+
+        assertEquals(UserStatus.OFFLINE, presenceRegistry.statusOf("idle"));
+        Mockito.verify(userEventBroadcaster).publish(Mockito.argThat(delta ->
+                "idle".equals(delta.getUsername()) && delta.getStatus() == UserStatus.OFFLINE));
+        presenceRegistry.flush();
+        Mockito.verify(userRepository).updateStatusForUsernames(UserStatus.OFFLINE, List.of("idle"));
+    }
+
+    @Test
+    public void heartbeat_offlineUser_staysOffline() {
+        presenceRegistry.track("signedOut", UserStatus.OFFLINE);
+
+        presenceRegistry.heartbeat("signedOut");
+
+        assertEquals(UserStatus.OFFLINE, presenceRegistry.statusOf("signedOut"));
+    }
+}
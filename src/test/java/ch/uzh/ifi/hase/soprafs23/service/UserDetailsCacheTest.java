@@ -0,0 +1,105 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserDetailsCacheTest
+ * Tests the expiry, the size bound and the invalidation of the cached principals,
+ * with a clock that is moved by hand.
+ */
+public class UserDetailsCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private UserDetailsCache userDetailsCache;
+
+    @BeforeEach
+    public void setup() {
+        // entries live 1s, at most 2 of them
+        userDetailsCache = new UserDetailsCache(clock::get, 1000, 2);
+    }
+
+    @Test
+    public void get_beforeTtl_cached() {
+        UserDetails userDetails = userDetails("testUsername");
+        userDetailsCache.put(userDetails);
+
+        clock.addAndGet(999);
+
+        assertSame(userDetails, userDetailsCache.get("testUsername"));
+    }
+
+    @Test
+    public void get_afterTtl_expired() {
+        userDetailsCache.put(userDetails("testUsername"));
+
+        clock.addAndGet(1000);
+
+        assertNull(userDetailsCache.get("testUsername"));
+    }
+
+    @Test
+    public void put_full_staysBounded() {
+        userDetailsCache.put(userDetails("first"));
+        userDetailsCache.put(userDetails("second"));
+
+        userDetailsCache.put(userDetails("third"));
+
+        assertNotNull(userDetailsCache.get("third"));
+        int cached = 0;
+        for (String username : new String[] {"first", "second", "third"}) {
+            if (userDetailsCache.get(username) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached <= 2);
+    }
+
+    @Test
+    public void put_full_expiredEntriesMakeRoom() {
+        userDetailsCache.put(userDetails("first"));
+        clock.addAndGet(500);
+        userDetailsCache.put(userDetails("second"));
+        clock.addAndGet(500);
+
+        // first has expired and is removed, second stays
+        userDetailsCache.put(userDetails("third"));
+
+        assertNull(userDetailsCache.get("first"));
+        assertNotNull(userDetailsCache.get("second"));
+        assertNotNull(userDetailsCache.get("third"));
+    }
+
+    @Test
+    public void invalidate_removesEntry() {
+        userDetailsCache.put(userDetails("testUsername"));
+        userDetailsCache.put(userDetails("otherUsername"));
+
+        userDetailsCache.invalidate("testUsername");
+        userDetailsCache.invalidate(null);
+
+        assertNull(userDetailsCache.get("testUsername"));
+        assertNotNull(userDetailsCache.get("otherUsername"));
+    }
+
+    @Test
+    public void put_ttlZero_notCached() {
+        userDetailsCache = new UserDetailsCache(clock::get, 0, 2);
+
+        userDetailsCache.put(userDetails("testUsername"));
+
+        assertNull(userDetailsCache.get("testUsername"));
+    }
+
+    private static UserDetails userDetails(String username) {
+        return new User(username, "", new ArrayList<>());
+    }
+}
@@ -0,0 +1,188 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.exceptions.ServerBusyException;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserGetDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UserEventBroadcasterTest
+ * Tests the fan-out of user changes on the fixed dispatcher threads and how slow,
+ * stalled and surplus subscribers are handled. The emitters record the events instead of writing them to a response.
+ */
+public class UserEventBroadcasterTest {
+
+    private UserEventBroadcaster broadcaster;
+
+    @AfterEach
+    public void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    public void publish_twoSubscribers_everyChangeSentToBoth() throws Exception {
+        broadcaster = new UserEventBroadcaster(new ObjectMapper(), 10, 16, 60000, 10000, 1);
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        broadcaster.subscribe(first);
+        broadcaster.subscribe(second);
+
+        for (int i = 0; i < 3; i++) {
+            broadcaster.publish(delta("user" + i));
+        }
+
+        first.awaitEvents(3);
+        second.awaitEvents(3);
+        assertEquals(2, broadcaster.getSubscriberCount());
+        assertEquals(3, broadcaster.getRevision());
+    }
+
+    @Test
+    public void publish_queueOfSlowSubscriberOverflows_onlySlowSubscriberDropped() throws Exception {
+        // the blocked send ties up one dispatcher thread, the other serves the fast subscriber
+        broadcaster = new UserEventBroadcaster(new ObjectMapper(), 10, 1, 60000, 60000, 2);
+        BlockingEmitter slow = new BlockingEmitter();
+        RecordingEmitter fast = new RecordingEmitter();
+        broadcaster.subscribe(slow);
+        broadcaster.subscribe(fast);
+
+        // the slow subscriber takes the first change and then blocks in the send
+        broadcaster.publish(delta("user0"));
+        assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+        fast.awaitEvents(1);
+        // fills its queue of one
+        broadcaster.publish(delta("user1"));
+        fast.awaitEvents(2);
+        // overflows it
+        broadcaster.publish(delta("user2"));
+        fast.awaitEvents(3);
+
+        assertEquals(1, broadcaster.getSubscriberCount());
+        // the emitter is completed once the blocked send returns
+        assertFalse(slow.completed.await(100, TimeUnit.MILLISECONDS));
+        slow.release.countDown();
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+
+        broadcaster.publish(delta("user3"));
+        fast.awaitEvents(4);
+    }
+
+    @Test
+    public void publish_manySubscribers_drainedByFixedNumberOfThreads() throws Exception {
+        broadcaster = new UserEventBroadcaster(new ObjectMapper(), 100, 64, 60000, 10000, 2);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<RecordingEmitter> emitters = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            RecordingEmitter emitter = new RecordingEmitter(threads);
+            emitters.add(emitter);
+            broadcaster.subscribe(emitter);
+        }
+
+        for (int i = 0; i < 40; i++) {
+            broadcaster.publish(delta("user" + i));
+        }
+
+        for (RecordingEmitter emitter : emitters) {
+            emitter.awaitEvents(40);
+        }
+        assertEquals(50, broadcaster.getSubscriberCount());
+        assertTrue(threads.size() <= 2, "drained on " + threads);
+    }
+
+    @Test
+    public void publish_sendInFlightLongerThanTimeout_stalledSubscriberDropped() throws Exception {
+        broadcaster = new UserEventBroadcaster(new ObjectMapper(), 10, 16, 60000, 1, 1);
+        BlockingEmitter stalled = new BlockingEmitter();
+        broadcaster.subscribe(stalled);
+
+        broadcaster.publish(delta("user0"));
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+        Thread.sleep(10);
+        broadcaster.keepAlive();
+
+        assertEquals(0, broadcaster.getSubscriberCount());
+        stalled.release.countDown();
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void subscribe_maxSubscribersReached_serviceUnavailable() {
+        broadcaster = new UserEventBroadcaster(new ObjectMapper(), 1, 16, 60000, 10000, 1);
+        broadcaster.subscribe(new RecordingEmitter());
+
+        ServerBusyException exception = assertThrows(ServerBusyException.class,
+                () -> broadcaster.subscribe(new RecordingEmitter()));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+        assertEquals(5, exception.getRetryAfterSeconds());
+        assertEquals(1, broadcaster.getSubscriberCount());
+    }
+
+    private static UserGetDTO delta(String username) {
+        UserGetDTO delta = new UserGetDTO();
+        delta.setUsername(username);
+        return delta;
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final Semaphore events = new Semaphore(0);
+        private final Set<String> threads;
+
+        private RecordingEmitter() {
+            this(ConcurrentHashMap.newKeySet());
+        }
+
+        private RecordingEmitter(Set<String> threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            threads.add(Thread.currentThread().getName());
+            events.release();
+        }
+
+        private void awaitEvents(int count) throws InterruptedException {
+            assertTrue(events.tryAcquire(count, 5, TimeUnit.SECONDS));
+            events.release(count);
+        }
+    }
+
+    private static class BlockingEmitter extends SseEmitter {
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UserSearchIndexTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserSearchIndex userSearchIndex;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        userSearchIndex = new UserSearchIndex(userRepository);
+        userSearchIndex.put("alice", 1L);
+        userSearchIndex.put("Alfred", 2L);
+        userSearchIndex.put("ALBERT", 3L);
+        userSearchIndex.put("bob", 4L);
+    }
+
+    @Test
+    public void idsStartingWith_ignoresCase_orderedByUsername() {
+        assertEquals(List.of(3L, 2L, 1L), userSearchIndex.idsStartingWith("al", 10));
+        assertEquals(List.of(3L, 2L, 1L), userSearchIndex.idsStartingWith("AL", 10));
+        assertEquals(List.of(2L), userSearchIndex.idsStartingWith("alf", 10));
+        assertEquals(List.of(), userSearchIndex.idsStartingWith("c", 10));
+    }
+
+    @Test
+    public void idsStartingWith_limit_firstMatchesOnly() {
+        assertEquals(List.of(3L, 2L), userSearchIndex.idsStartingWith("a", 2));
+    }
+
+    @Test
+    public void rename_oldUsernameNotFound() {
+        userSearchIndex.rename("bob", "robert", 4L);
+
+        assertEquals(List.of(), userSearchIndex.idsStartingWith("bo", 10));
+        assertEquals(List.of(4L), userSearchIndex.idsStartingWith("rob", 10));
+        assertEquals(4, userSearchIndex.size());
+    }
+}
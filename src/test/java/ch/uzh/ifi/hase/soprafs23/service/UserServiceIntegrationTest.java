@@ -1,17 +1,32 @@
 package ch.uzh.ifi.hase.soprafs23.service;
 
+import ch.uzh.ifi.hase.soprafs23.constant.BatchItemStatus;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
 import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs23.repository.UserSummary;
+import ch.uzh.ifi.hase.soprafs23.rest.dto.UserBatchResultDTO;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,6 +46,12 @@ public class UserServiceIntegrationTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
     @BeforeEach
     public void setup() {
         userRepository.deleteAll();
@@ -55,6 +76,76 @@ public class UserServiceIntegrationTest {
         assertEquals(UserStatus.ONLINE, createdUser.getStatus());
     }
 
+    @Test
+    public void updateUser_staleVersion_preconditionFailed() {
+        User testUser = new User();
+        testUser.setUsername("testUsername");
+        testUser.setPassword("testUsername");
+        User createdUser = userService.createUser(testUser);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + createdUser.getToken());
+
+        // two clients read the same version of the user
+        User firstCopy = userService.getById(createdUser.getId());
+        User secondCopy = userService.getById(createdUser.getId());
+
+        User updates = new User();
+        updates.setUsername("testUsername");
+        updates.setBirthday(new Date());
+        User updatedUser = userService.updateUser(firstCopy, updates, request);
+        assertEquals(secondCopy.getVersion() + 1, updatedUser.getVersion());
+
+        // the second update is based on the old version and must not overwrite the first one
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.updateUser(secondCopy, updates, request));
+        assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatus());
+    }
+
+    @Test
+    public void searchUserSummaries_prefix_matchingUsersOrderedByUsername() {
+        for (String username : new String[] {"searchZeta", "SearchAlpha", "otherUser"}) {
+            User testUser = new User();
+            testUser.setUsername(username);
+            testUser.setPassword("testPassword");
+            userService.createUser(testUser);
+        }
+
+        List<UserSummary> users = userService.searchUserSummaries("search", 10);
+
+        assertEquals(2, users.size());
+        assertEquals("SearchAlpha", users.get(0).getUsername());
+        assertEquals("searchZeta", users.get(1).getUsername());
+    }
+
+    @Test
+    public void streamUsers_allUsers_oneReadOnlyTransactionAndDetached() {
+        for (String username : new String[] {"first", "second", "third"}) {
+            User testUser = new User();
+            testUser.setUsername(username);
+            testUser.setPassword("testPassword");
+            userService.createUser(testUser);
+        }
+        List<String> usernames = new ArrayList<>();
+        Set<Object> transactions = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<User> streamedUsers = new ArrayList<>();
+
+        userService.streamUsers(user -> {
+            assertTrue(TransactionSynchronizationManager.isActualTransactionActive());
+            assertTrue(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+            transactions.add(TransactionSynchronizationManager.getResource(entityManagerFactory));
+            // the users handed out before are not kept in the persistence context
+            for (User streamedUser : streamedUsers) {
+                assertFalse(entityManager.contains(streamedUser));
+            }
+            assertTrue(entityManager.contains(user));
+            streamedUsers.add(user);
+            usernames.add(user.getUsername());
+        });
+
+        assertEquals(List.of("first", "second", "third"), usernames);
+        assertEquals(1, transactions.size());
+    }
+
     @Test
     public void createUser_duplicateUsername_throwsException() {
         assertEquals(Optional.empty(), userRepository.findByUsername("testUsername"));
@@ -73,4 +164,62 @@ public class UserServiceIntegrationTest {
         // check that an error is thrown
         assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser2));
     }
+
+    @Test
+    public void createUsers_mixedBatch_reportsEachItem() {
+        User existingUser = new User();
+        existingUser.setUsername("existing");
+        existingUser.setPassword("password");
+        userService.createUser(existingUser);
+
+        List<User> batch = new ArrayList<>();
+        for (String username : new String[]{"first", "existing", "second", "first", null}) {
+            User user = new User();
+            user.setUsername(username);
+            user.setPassword("password");
+            batch.add(user);
+        }
+
+        // when
+        List<UserBatchResultDTO> results = userService.createUsers(batch).join();
+
+        // then
+        assertEquals(BatchItemStatus.CREATED, results.get(0).getStatus());
+        assertEquals(BatchItemStatus.CONFLICT, results.get(1).getStatus());
+        assertEquals(BatchItemStatus.CREATED, results.get(2).getStatus());
+        assertEquals(BatchItemStatus.CONFLICT, results.get(3).getStatus());
+        assertEquals(BatchItemStatus.INVALID, results.get(4).getStatus());
+        assertNotNull(results.get(0).getId());
+        assertTrue(userRepository.findByUsername("second").isPresent());
+        assertEquals(3, userRepository.count());
+    }
+
+    @Test
+    public void createUsers_usernameTakenAfterCheck_conflictForThatItemOnly() {
+        // stored past the UsernameIndex, like a signup on another instance after the check
+        User concurrentUser = new User();
+        concurrentUser.setUsername("concurrentSignup");
+        concurrentUser.setPassword("password");
+        concurrentUser.setCreationDate(new Date());
+        concurrentUser.setStatus(UserStatus.OFFLINE);
+        userRepository.saveAndFlush(concurrentUser);
+
+        List<User> batch = new ArrayList<>();
+        for (String username : new String[]{"concurrentSignup", "third"}) {
+            User user = new User();
+            user.setUsername(username);
+            user.setPassword("password");
+            batch.add(user);
+        }
+
+        // when
+        List<UserBatchResultDTO> results = userService.createUsers(batch).join();
+
+        // then
+        assertEquals(BatchItemStatus.CONFLICT, results.get(0).getStatus());
+        assertEquals(BatchItemStatus.CREATED, results.get(1).getStatus());
+        assertNotNull(results.get(1).getId());
+        assertTrue(userRepository.findByUsername("third").isPresent());
+        assertEquals(2, userRepository.count());
+    }
 }
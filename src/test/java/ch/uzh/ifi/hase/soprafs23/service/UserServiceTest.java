@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs23.service;
 
+import ch.uzh.ifi.hase.soprafs23.audit.AuditJournal;
 import ch.uzh.ifi.hase.soprafs23.constant.UserStatus;
 import ch.uzh.ifi.hase.soprafs23.entity.User;
 import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
@@ -11,10 +12,15 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -27,6 +33,27 @@ public class UserServiceTest {
     @Mock
     private JwtUtil jwtUtil;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private PresenceRegistry presenceRegistry;
+
+    @Mock
+    private UserEventBroadcaster userEventBroadcaster;
+
+    @Mock
+    private AuditJournal auditJournal;
+
+    @Mock
+    private PasswordHashingExecutor passwordHashingExecutor;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private UserService userService;
 
@@ -50,9 +77,10 @@ public class UserServiceTest {
         // testUser
         MockitoAnnotations.openMocks(this);
         Mockito.when(userRepository.save(Mockito.any())).thenReturn(testUser);
-        Mockito.when(jwtUtil.generateToken((User) Mockito.any())).thenReturn("12345");
-        Mockito.when(jwtUtil.generateToken((UserDetails) Mockito.any())).thenReturn("12345");
-        userService  = new UserService(userRepository, jwtUtil);
+        Mockito.when(jwtUtil.generateToken(Mockito.any())).thenReturn("12345");
+        userService  = new UserService(userRepository, jwtUtil, userDetailsCache, passwordEncoder, presenceRegistry, userEventBroadcaster,
+                new UsernameIndex(userRepository, 1000, 0.01), new UserSearchIndex(userRepository), auditJournal,
+                passwordHashingExecutor, transactionManager);
     }
 
     @Test
@@ -96,4 +124,69 @@ public class UserServiceTest {
         assertThrows(ResponseStatusException.class, () -> userService.createUser(testUser));
     }
 
+    @Test
+    public void updateUser_renamed_cachedPrincipalInvalidated() {
+        Mockito.when(jwtUtil.extractUsername("token")).thenReturn("testUsername");
+        User updates = new User();
+        updates.setUsername("newUsername");
+
+        userService.updateUser(testUser, updates, requestWithToken());
+
+        Mockito.verify(userDetailsCache).invalidate("testUsername");
+    }
+
+    @Test
+    public void getLogoutUser_cachedPrincipalInvalidated() {
+        Mockito.when(jwtUtil.extractUsername("token")).thenReturn("testUsername");
+
+        userService.getLogoutUser(requestWithToken());
+
+        Mockito.verify(userDetailsCache).invalidate("testUsername");
+    }
+
+    @Test
+    public void updateUser_takenUsername_presenceOfBothUsersUnchanged() {
+        PresenceRegistry realPresenceRegistry = new PresenceRegistry(userRepository, userEventBroadcaster, 60000);
+        userService = new UserService(userRepository, jwtUtil, userDetailsCache, passwordEncoder, realPresenceRegistry, userEventBroadcaster,
+                new UsernameIndex(userRepository, 1000, 0.01), new UserSearchIndex(userRepository), auditJournal);
+        realPresenceRegistry.markOnline("testUsername");
+        realPresenceRegistry.markOffline("takenUsername");
+        Mockito.when(jwtUtil.extractUsername("token")).thenReturn("testUsername");
+        // the unique constraint rejects the new username on flush
+        Mockito.doThrow(new DataIntegrityViolationException("unique")).when(userRepository).flush();
+        User updates = new User();
+        updates.setUsername("takenUsername");
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.updateUser(testUser, updates, requestWithToken()));
+
+        assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+        assertEquals(UserStatus.ONLINE, realPresenceRegistry.statusOf("testUsername"));
+        assertEquals(UserStatus.OFFLINE, realPresenceRegistry.statusOf("takenUsername"));
+        Mockito.verify(userDetailsCache, Mockito.never()).invalidate(Mockito.any());
+        // the pending status writes still belong to their users
+        realPresenceRegistry.flush();
+        Mockito.verify(userRepository).updateStatusForUsernames(UserStatus.ONLINE, List.of("testUsername"));
+        Mockito.verify(userRepository).updateStatusForUsernames(UserStatus.OFFLINE, List.of("takenUsername"));
+    }
+
+    @Test
+    public void updateUser_preconditionNotMet_preconditionFailedAndNotSaved() {
+        Mockito.when(userRepository.findById(1L)).thenReturn(testU);
+        User updates = new User();
+        updates.setUsername("newUsername");
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> userService.updateUser(1L, updates, requestWithToken(), user -> false));
+
+        assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatus());
+        assertEquals("testUsername", testUser.getUsername());
+        Mockito.verify(userRepository, Mockito.never()).save(Mockito.any());
+    }
+
+    private static MockHttpServletRequest requestWithToken() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer token");
+        return request;
+    }
 }
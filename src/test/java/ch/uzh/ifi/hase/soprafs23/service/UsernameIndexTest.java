@@ -0,0 +1,60 @@
+package ch.uzh.ifi.hase.soprafs23.service;
+
+import ch.uzh.ifi.hase.soprafs23.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsernameIndexTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UsernameIndex usernameIndex;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        usernameIndex = new UsernameIndex(userRepository, 1000, 0.01);
+    }
+
+    @Test
+    public void mightContain_beforeBuild_everyUsernameMightBeTaken() {
+        assertTrue(usernameIndex.mightContain("anyUsername"));
+    }
+
+    @Test
+    public void build_existingAndAddedUsernames_contained() {
+        Mockito.when(userRepository.streamAllUsernames()).thenReturn(Stream.of("first", "second"));
+        usernameIndex.build();
+        usernameIndex.add("third");
+
+        assertTrue(usernameIndex.mightContain("first"));
+        assertTrue(usernameIndex.mightContain("second"));
+        assertTrue(usernameIndex.mightContain("third"));
+    }
+
+    @Test
+    public void mightContain_fullIndex_fewFalsePositives() {
+        Mockito.when(userRepository.streamAllUsernames()).thenReturn(Stream.empty());
+        usernameIndex.build();
+        for (int i = 0; i < 1000; i++) {
+            usernameIndex.add("user" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (usernameIndex.mightContain("free" + i)) {
+                falsePositives++;
+            }
+        }
+        // expected about 1%
+        assertTrue(falsePositives < 300, falsePositives + " false positives");
+    }
+}